@@ -0,0 +1,329 @@
+package hudson.plugins.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a changelog, written instead of the "git whatchanged" text when
+ * {@link GitSCM#BINARY_CHANGELOG} is set, and read back without any regular expression.
+ *
+ * <p>
+ * Names, e-mail addresses, dates and directories are stored once and then referred to by number,
+ * SHA1s take their 20 raw bytes, and numbers are variable length. Commits are stored once each, in
+ * changelog order. The file starts with a zero byte, which a text changelog never does, so
+ * {@link GitChangeLogParser} can tell the two formats apart.
+ *
+ * <p>
+ * The commits are followed by a table of the strings they refer to and of the length of each commit,
+ * and the file ends with the position of that table, so that {@link GitChangeSetList} can read the commits
+ * one at a time, as it does with the {@link GitChangeLogIndex} of a text changelog.
+ */
+/*package*/ final class BinaryChangeLog {
+
+    private static final byte[] MAGIC = {0, 'G', 'C', 'L'};
+    private static final int VERSION = 3;
+
+    private BinaryChangeLog() {
+    }
+
+    /**
+     * Whether the file holds a binary changelog rather than text.
+     */
+    static boolean isBinary(File changelog) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        InputStream in = new FileInputStream(changelog);
+        try {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+        return Arrays.equals(header, MAGIC);
+    }
+
+    static void write(File changelog, List<GitChangeSet> changeSets) throws IOException {
+        Output out = new Output(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(changelog))));
+        try {
+            out.out.write(MAGIC);
+            out.writeByte(VERSION);
+            int[] lengths = new int[changeSets.size()];
+            for (int i = 0; i < lengths.length; i++) {
+                int start = out.out.size();
+                changeSets.get(i).writeTo(out);
+                lengths[i] = out.out.size() - start;
+            }
+
+            long table = out.out.size();
+            out.writeCount(out.table.size());
+            for (String string : out.table) {
+                out.writeText(string);
+            }
+            out.writeCount(lengths.length);
+            for (int length : lengths) {
+                out.writeCount(length);
+            }
+            out.out.writeLong(table);
+        } finally {
+            out.out.close();
+        }
+    }
+
+    /**
+     * Reads the table of a changelog, which tells where each of its commits is.
+     */
+    static Index readIndex(File changelog, boolean authorOrCommitter) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(changelog, "r");
+        try {
+            byte[] header = new byte[MAGIC.length];
+            in.readFully(header);
+            if (!Arrays.equals(header, MAGIC) || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Unsupported changelog format in " + changelog);
+            }
+            long start = in.getFilePointer();
+
+            in.seek(in.length() - 8);
+            long table = in.readLong();
+            if (table < start || table > in.length() - 8) {
+                throw new IOException("Malformed changelog " + changelog);
+            }
+            byte[] bytes = new byte[(int) (in.length() - 8 - table)];
+            in.seek(table);
+            in.readFully(bytes);
+
+            Input tableIn = new Input(new DataInputStream(new ByteArrayInputStream(bytes)), null);
+            List<String> strings = new ArrayList<String>();
+            for (int count = tableIn.readCount(); count > 0; count--) {
+                strings.add(tableIn.readText());
+            }
+            long[] starts = new long[tableIn.readCount() + 1];
+            starts[0] = start;
+            for (int i = 1; i < starts.length; i++) {
+                starts[i] = starts[i - 1] + tableIn.readCount();
+            }
+            if (starts[starts.length - 1] != table) {
+                throw new IOException("Malformed changelog " + changelog);
+            }
+            return new Index(strings, starts, authorOrCommitter);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Where each commit of a changelog is, along with the strings they refer to.
+     */
+    static final class Index implements GitChangeSetList.Index {
+        private final List<String> strings;
+        /**
+         * Offsets of the first byte of each commit, in changelog order, followed by that of the table.
+         */
+        private final long[] starts;
+        private final boolean authorOrCommitter;
+
+        private Index(List<String> strings, long[] starts, boolean authorOrCommitter) {
+            this.strings = strings;
+            this.starts = starts;
+            this.authorOrCommitter = authorOrCommitter;
+        }
+
+        public int size() {
+            return starts.length - 1;
+        }
+
+        public GitChangeSet read(RandomAccessFile changelog, int position) throws IOException {
+            byte[] bytes = new byte[(int) (starts[position + 1] - starts[position])];
+            changelog.seek(starts[position]);
+            changelog.readFully(bytes);
+            return new GitChangeSet(new Input(new DataInputStream(new ByteArrayInputStream(bytes)), strings), authorOrCommitter);
+        }
+    }
+
+    /**
+     * Writes the fields of change sets.
+     */
+    static final class Output {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        /**
+         * Strings referred to, by number.
+         */
+        private final List<String> table = new ArrayList<String>();
+
+        Output(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeCount(int n) throws IOException {
+            while ((n & ~0x7F) != 0) {
+                out.write((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            out.write(n);
+        }
+
+        void writeByte(int b) throws IOException {
+            out.write(b);
+        }
+
+        /**
+         * Writes a string likely to repeat, such as a name or an e-mail address.
+         */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeCount(0);
+                return;
+            }
+            Integer ref = strings.get(s);
+            if (ref == null) {
+                ref = table.size();
+                strings.put(s, ref);
+                table.add(s);
+            }
+            writeCount(ref + 1);
+        }
+
+        /**
+         * Writes a string unlikely to repeat, such as a commit message.
+         */
+        void writeText(String s) throws IOException {
+            if (s == null) {
+                writeCount(0);
+                return;
+            }
+            byte[] bytes = s.getBytes("UTF-8");
+            writeCount(bytes.length + 1);
+            out.write(bytes);
+        }
+
+        void writeSha1(String sha1) throws IOException {
+            if (sha1 != null && !ObjectId.isId(sha1)) {
+                // abbreviated or otherwise unusual
+                out.write(2);
+                writeString(sha1);
+            } else {
+                writeObjectId(sha1 == null ? null : ObjectId.fromString(sha1));
+            }
+        }
+
+        void writeObjectId(ObjectId id) throws IOException {
+            if (id == null) {
+                out.write(0);
+            } else {
+                out.write(1);
+                id.copyRawTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads what {@link Output} wrote.
+     */
+    static final class Input {
+        private final DataInputStream in;
+        private final List<String> strings;
+
+        /**
+         * @param strings
+         *      the strings of the table of the changelog, or null when reading the table itself.
+         */
+        Input(DataInputStream in, List<String> strings) {
+            this.in = in;
+            this.strings = strings;
+        }
+
+        int readCount() throws IOException {
+            int n = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                n |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return n;
+                }
+            }
+            throw new IOException("Malformed number in changelog");
+        }
+
+        int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        String readString() throws IOException {
+            int ref = readCount();
+            if (ref == 0) {
+                return null;
+            }
+            if (strings == null || ref - 1 >= strings.size()) {
+                throw new IOException("Malformed string reference in changelog");
+            }
+            return strings.get(ref - 1);
+        }
+
+        String readText() throws IOException {
+            int length = readCount();
+            if (length == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length - 1];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+
+        String readSha1() throws IOException {
+            switch (readByte()) {
+            case 0:
+                return null;
+            case 1:
+                return readRawObjectId().name();
+            default:
+                return readString();
+            }
+        }
+
+        ObjectId readObjectId() throws IOException {
+            switch (readByte()) {
+            case 0:
+                return null;
+            case 1:
+                return readRawObjectId();
+            default:
+                String sha1 = readString();
+                if (sha1 == null || !ObjectId.isId(sha1)) {
+                    throw new IOException("Malformed object id in changelog");
+                }
+                return ObjectId.fromString(sha1);
+            }
+        }
+
+        private ObjectId readRawObjectId() throws IOException {
+            byte[] raw = new byte[ObjectId.OBJECT_ID_LENGTH];
+            in.readFully(raw);
+            return ObjectId.fromRaw(raw);
+        }
+    }
+}
@@ -32,6 +32,11 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
 
     private String name;
 
+    /**
+     * Matcher for the most recently used expansion of {@link #name}.
+     */
+    private transient volatile CompiledSpec compiled;
+
     @Exported
     public String getName() {
         return name;
@@ -44,6 +49,7 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
             this.name = "**";
         else
             this.name = name.trim();
+        this.compiled = null;
     }
 
     @DataBoundConstructor
@@ -61,7 +67,7 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
     }
 
     public boolean matches(String item, EnvVars env) {
-        return getPattern(env).matcher(item).matches();
+        return getMatcher(env).matches(item);
     }
     
     public List<String> filterMatching(Collection<String> branches) {
@@ -96,25 +102,146 @@ public class BranchSpec extends AbstractDescribableImpl<BranchSpec> implements S
         return items;
     }
 
-    private String getExpandedName(EnvVars env) {
-        return env.expand(name);
+    /*package*/ String getExpandedName(EnvVars env) {
+        // most specs don't use variables, so skip the expansion altogether
+        return name.indexOf('$') < 0 ? name : env.expand(name);
     }
-    
-    private Pattern getPattern(EnvVars env) {
-        String expandedName = getExpandedName(env);
+
+    /**
+     * Gets the matcher for the spec as expanded in the given environment, compiling it
+     * only when the expanded name differs from the previous call.
+     */
+    /*package*/ BranchMatcher getMatcher(EnvVars env) {
+        return getMatcher(getExpandedName(env));
+    }
+
+    /*package*/ BranchMatcher getMatcher(String expandedName) {
+        CompiledSpec c = compiled;
+        if (c == null || !c.expandedName.equals(expandedName)) {
+            c = new CompiledSpec(expandedName, compile(expandedName));
+            compiled = c;
+        }
+        return c.matcher;
+    }
+
+    private static final class CompiledSpec {
+        final String expandedName;
+        final BranchMatcher matcher;
+
+        CompiledSpec(String expandedName, BranchMatcher matcher) {
+            this.expandedName = expandedName;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * Shapes of expanded branch specs that can be matched without a regular expression.
+     */
+    /*package*/ enum Shape {
+        /** "name": the whole branch name. */
+        EXACT,
+        /** "&#42;/name": any single path component, followed by {@link BranchMatcher#operand}, which starts with a "/". */
+        COMPONENT_SUFFIX,
+        /** "&#42;&#42;name": anything, followed by {@link BranchMatcher#operand}. */
+        SUFFIX,
+        /** "prefix&#42;&#42;": {@link BranchMatcher#operand}, followed by anything. */
+        PREFIX,
+        /** "prefix&#42;": {@link BranchMatcher#operand}, followed by anything but a "/". */
+        COMPONENT_PREFIX,
+        /** Anything else, matched with {@link BranchMatcher#pattern}. */
+        PATTERN
+    }
+
+    /**
+     * Matches branch names against an expanded branch spec.
+     */
+    /*package*/ static final class BranchMatcher {
+        final Shape shape;
+        final String operand;
+        final Pattern pattern;
+
+        BranchMatcher(Shape shape, String operand) {
+            this.shape = shape;
+            this.operand = operand;
+            this.pattern = null;
+        }
+
+        BranchMatcher(Pattern pattern) {
+            this.shape = Shape.PATTERN;
+            this.operand = null;
+            this.pattern = pattern;
+        }
+
+        boolean matches(String item) {
+            switch (shape) {
+            case EXACT:
+                return operand.equals(item);
+            case COMPONENT_SUFFIX:
+                int start = item.length() - operand.length();
+                return start >= 0 && item.endsWith(operand) && item.lastIndexOf('/', start - 1) < 0;
+            case SUFFIX:
+                return item.endsWith(operand);
+            case PREFIX:
+                return item.startsWith(operand);
+            case COMPONENT_PREFIX:
+                return item.startsWith(operand) && item.indexOf('/', operand.length()) < 0;
+            default:
+                return pattern.matcher(item).matches();
+            }
+        }
+    }
+
+    /**
+     * Compiles an expanded spec, avoiding regular expressions for the common shapes
+     * "name", "&#42;/name", "&#42;&#42;name", "prefix&#42;&#42;" and "prefix&#42;".
+     */
+    private static BranchMatcher compile(String expandedName) {
+        if (expandedName.startsWith(":") && expandedName.length() > 1) {
+            return new BranchMatcher(getPattern(expandedName));
+        }
+
+        String qualifiedName = qualify(expandedName);
+        int wildcards = 0;
+        for (int i = 0; i < qualifiedName.length(); i++) {
+            if (qualifiedName.charAt(i) == '*') wildcards++;
+        }
+
+        if (wildcards == 0) {
+            return new BranchMatcher(Shape.EXACT, qualifiedName);
+        }
+        if (wildcards == 1 && qualifiedName.startsWith("*/")) {
+            return new BranchMatcher(Shape.COMPONENT_SUFFIX, qualifiedName.substring(1));
+        }
+        if (wildcards == 2 && qualifiedName.startsWith("**")) {
+            return new BranchMatcher(Shape.SUFFIX, qualifiedName.substring(2));
+        }
+        if (wildcards == 2 && qualifiedName.endsWith("**")) {
+            return new BranchMatcher(Shape.PREFIX, qualifiedName.substring(0, qualifiedName.length() - 2));
+        }
+        if (wildcards == 1 && qualifiedName.endsWith("*")) {
+            return new BranchMatcher(Shape.COMPONENT_PREFIX, qualifiedName.substring(0, qualifiedName.length() - 1));
+        }
+        return new BranchMatcher(getPattern(expandedName));
+    }
+
+    /**
+     * If an unqualified branch was given, add a "*&#47;" so it will match branches
+     * from remote repositories as the user probably intended.
+     */
+    private static String qualify(String expandedName) {
+        if (!expandedName.contains("**") && !expandedName.contains("/"))
+            return "*/" + expandedName;
+        return expandedName;
+    }
+
+    private static Pattern getPattern(String expandedName) {
         // use regex syntax directly if name starts with colon
         if (expandedName.startsWith(":") && expandedName.length() > 1) {
             String regexSubstring = expandedName.substring(1, expandedName.length());
             return Pattern.compile(regexSubstring);
         }
         
-        // if an unqualified branch was given add a "*/" so it will match branches
-        // from remote repositories as the user probably intended
-        String qualifiedName;
-        if (!expandedName.contains("**") && !expandedName.contains("/"))
-            qualifiedName = "*/" + expandedName;
-        else
-            qualifiedName = expandedName;
+        String qualifiedName = qualify(expandedName);
         
         // build a pattern into this builder
         StringBuilder builder = new StringBuilder();
@@ -0,0 +1,196 @@
+package hudson.plugins.git;
+
+import hudson.EnvVars;
+import hudson.plugins.git.BranchSpec.BranchMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Matches branch names against a whole list of {@link BranchSpec}s at once.
+ *
+ * <p>
+ * Testing a branch against each spec in turn costs time proportional to the number of specs,
+ * which adds up for jobs listing dozens of them. This matcher sorts the specs by shape instead:
+ * exact names and "&#42;/name" specs are looked up in hash maps, and prefix and suffix specs are
+ * merged into tries walked once per branch name. Only specs that need a regular expression are
+ * still tried one by one.
+ *
+ * <p>
+ * {@link #indexOf(String)} tells which spec matched, so callers that care about the order of the
+ * specs (such as {@link hudson.plugins.git.util.GitUtils#sortBranchesForRevision}) can use it too.
+ */
+public final class BranchSpecMatcher {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * Specs and their expansions this matcher was compiled from, see {@link #isFor(List, EnvVars)}.
+     */
+    private final List<BranchSpec> specs;
+    private final String[] expandedNames;
+
+    private final Map<String, Integer> exact = new HashMap<String, Integer>();
+    private final Map<String, Integer> componentSuffixes = new HashMap<String, Integer>();
+    private final Node prefixes = new Node();
+    private final Node suffixes = new Node();
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+    private final List<Integer> patternIndexes = new ArrayList<Integer>();
+
+    /**
+     * Compiles the given specs, as expanded in the given environment.
+     */
+    public BranchSpecMatcher(List<BranchSpec> specs, EnvVars env) {
+        this.specs = specs;
+        this.expandedNames = new String[specs.size()];
+        for (int i = 0; i < expandedNames.length; i++) {
+            BranchSpec spec = specs.get(i);
+            expandedNames[i] = spec.getExpandedName(env);
+            add(spec.getMatcher(expandedNames[i]), i);
+        }
+    }
+
+    private void add(BranchMatcher matcher, int index) {
+        switch (matcher.shape) {
+        case EXACT:
+            putIfAbsent(exact, matcher.operand, index);
+            break;
+        case COMPONENT_SUFFIX:
+            putIfAbsent(componentSuffixes, matcher.operand, index);
+            break;
+        case SUFFIX:
+            Node node = suffixes;
+            for (int i = matcher.operand.length() - 1; i >= 0; i--) {
+                node = node.child(matcher.operand.charAt(i));
+            }
+            node.any = Math.min(node.any, index);
+            break;
+        case PREFIX:
+            node = prefixes;
+            for (int i = 0; i < matcher.operand.length(); i++) {
+                node = node.child(matcher.operand.charAt(i));
+            }
+            node.any = Math.min(node.any, index);
+            break;
+        case COMPONENT_PREFIX:
+            node = prefixes;
+            for (int i = 0; i < matcher.operand.length(); i++) {
+                node = node.child(matcher.operand.charAt(i));
+            }
+            node.component = Math.min(node.component, index);
+            break;
+        default:
+            patterns.add(matcher.pattern);
+            patternIndexes.add(index);
+        }
+    }
+
+    private static void putIfAbsent(Map<String, Integer> map, String key, int index) {
+        if (!map.containsKey(key)) {
+            map.put(key, index);
+        }
+    }
+
+    /**
+     * Gets the position of the first spec matching the given branch name.
+     *
+     * @return
+     *      the index of the spec in the list this matcher was compiled from, or -1 if none matches.
+     */
+    public int indexOf(String item) {
+        int best = NONE;
+
+        Integer found = exact.get(item);
+        if (found != null) {
+            best = found;
+        }
+
+        // "*/name" matches when the name follows the first slash
+        int slash = item.indexOf('/');
+        if (slash >= 0 && !componentSuffixes.isEmpty()) {
+            found = componentSuffixes.get(item.substring(slash));
+            if (found != null && found < best) {
+                best = found;
+            }
+        }
+
+        int lastSlash = item.lastIndexOf('/');
+        Node node = prefixes;
+        for (int i = 0; node != null; i++) {
+            if (node.any < best) {
+                best = node.any;
+            }
+            if (node.component < best && i > lastSlash) {
+                best = node.component;
+            }
+            node = i < item.length() ? node.children.get(item.charAt(i)) : null;
+        }
+
+        node = suffixes;
+        for (int i = item.length() - 1; node != null; i--) {
+            if (node.any < best) {
+                best = node.any;
+            }
+            node = i >= 0 ? node.children.get(item.charAt(i)) : null;
+        }
+
+        // regular expressions are the expensive part, only try those that would improve on what we have
+        for (int i = 0; i < patterns.size() && patternIndexes.get(i) < best; i++) {
+            if (patterns.get(i).matcher(item).matches()) {
+                best = patternIndexes.get(i);
+                break;
+            }
+        }
+
+        return best == NONE ? -1 : best;
+    }
+
+    /**
+     * Whether any of the specs matches the given branch name.
+     */
+    public boolean matches(String item) {
+        return indexOf(item) >= 0;
+    }
+
+    /**
+     * Whether this matcher was compiled from the given list of specs, expanding to the same names in the given environment.
+     */
+    public boolean isFor(List<BranchSpec> specs, EnvVars env) {
+        if (this.specs != specs || expandedNames.length != specs.size()) {
+            return false;
+        }
+        for (int i = 0; i < expandedNames.length; i++) {
+            if (!expandedNames[i].equals(specs.get(i).getExpandedName(env))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Node of a prefix or suffix trie, recording the first spec ending there.
+     */
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<Character, Node>(4);
+        /**
+         * Spec matching anything after (or before, for suffixes) this node.
+         */
+        int any = NONE;
+        /**
+         * Spec matching anything but a "/" after this node.
+         */
+        int component = NONE;
+
+        Node child(char c) {
+            Node child = children.get(c);
+            if (child == null) {
+                child = new Node();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+}
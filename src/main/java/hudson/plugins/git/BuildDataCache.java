@@ -0,0 +1,119 @@
+package hudson.plugins.git;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.git.util.BuildData;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers, per job and per set of remote URLs, which run holds the latest relevant {@link BuildData},
+ * so that {@link GitSCM#getBuildData(Run)} does not have to walk back through (and load from disk)
+ * every older run that has no relevant {@link BuildData}.
+ *
+ * <p>
+ * An entry records that every run numbered from {@link Entry#foundNumber} up to {@link Entry#verifiedUpTo}
+ * has been examined, and that the former is the most recent one with relevant {@link BuildData}.
+ * Only the run number is kept, and the {@link BuildData} is read again from that run, so that the cache does not
+ * hold on to the actions of runs Jenkins would otherwise let go of.
+ * Run numbers only grow and completed runs do not gain {@link BuildData}, so entries are only recorded
+ * for ranges that contain no run still in progress, and are dropped when a run of the job is deleted.
+ */
+public final class BuildDataCache {
+
+    private static final Map<Job, Map<String, Entry>> entries = Collections.synchronizedMap(new WeakHashMap<Job, Map<String, Entry>>());
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private BuildDataCache() {
+    }
+
+    /**
+     * Result of an earlier lookup.
+     */
+    static final class Entry {
+        /**
+         * Highest run number examined.
+         */
+        final int verifiedUpTo;
+        /**
+         * Number of the run holding the relevant {@link BuildData}, or -1 if none of the examined runs had any.
+         */
+        final int foundNumber;
+
+        Entry(int verifiedUpTo, int foundNumber) {
+            this.verifiedUpTo = verifiedUpTo;
+            this.foundNumber = foundNumber;
+        }
+
+        /**
+         * Whether a lookup that reached the given run can be answered from this entry.
+         */
+        boolean covers(int number) {
+            return number <= verifiedUpTo && number >= foundNumber;
+        }
+    }
+
+    static Entry get(Job job, String key) {
+        Map<String, Entry> forJob = entries.get(job);
+        return forJob == null ? null : forJob.get(key);
+    }
+
+    static void put(Job job, String key, Entry entry) {
+        synchronized (entries) {
+            Map<String, Entry> forJob = entries.get(job);
+            if (forJob == null) {
+                forJob = new ConcurrentHashMap<String, Entry>();
+                entries.put(job, forJob);
+            }
+            Entry old = forJob.get(key);
+            if (old == null || old.verifiedUpTo < entry.verifiedUpTo) {
+                forJob.put(key, entry);
+            }
+        }
+    }
+
+    static void invalidate(Job job) {
+        entries.remove(job);
+    }
+
+    static void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    static void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Number of {@link GitSCM#getBuildData(Run)} lookups answered from this cache.
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of {@link GitSCM#getBuildData(Run)} lookups that had to walk the build history.
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Drops the cached lookups of a job when one of its runs is deleted.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run> {
+        @Override
+        public void onDeleted(Run r) {
+            invalidate(r.getParent());
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package hudson.plugins.git;
+
+import hudson.plugins.git.util.PathRegionMatcher;
+import hudson.remoting.VirtualChannel;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Goes through the commits of a range as {@link GitChangeSet}s, the way {@link GitClient#showRevision(ObjectId, ObjectId)}
+ * lists them, but reading the repository directly instead of parsing the text output of git.
+ *
+ * <p>
+ * The range is listed once, then its commits are described in batches, each one larger than the previous one,
+ * so that a caller interested in the first few commits only, such as polling looking for a commit that is not
+ * excluded, does not pay for comparing the trees of the whole range. Like "git log -m", a merge is described
+ * once against each of its parents. Renames are not detected, as that means reading the content of the files:
+ * a renamed file is reported as the deletion of the old path and the addition of the new one, which are the paths
+ * {@link GitChangeSet} gets from "git log -M" too, only without the blob of the other side. A change of the type
+ * of a file, such as into a symbolic link, is reported without its blobs.
+ *
+ * <p>
+ * Given a {@link PathRegionMatcher}, directories that cannot contain any relevant path are not looked into,
+ * and are reported as changed themselves, as their path followed by a slash, if anything in them changed.
+ */
+/*package*/ final class ChangeSetWalk {
+
+    private static final int FIRST_BATCH = 1;
+    private static final int MAX_BATCH = 512;
+
+    private final GitClient git;
+    private final ObjectId from;
+    private final ObjectId to;
+    private final boolean authorOrCommitter;
+    private final PathRegionMatcher prune;
+
+    private List<Commit> batch;
+    private int position;
+    /**
+     * Commits of the range, in the order they are described, once listed by the first batch.
+     */
+    private List<ObjectId> range;
+    /**
+     * Position in {@link #range} of the first commit past the current batch.
+     */
+    private int described;
+    private int limit = FIRST_BATCH;
+
+    /**
+     * @param from
+     *      commit whose history is left out of the range, or null to only walk {@code to}.
+     * @param prune
+     *      regions telling which directories need not be looked into, or null to list every changed file.
+     */
+    ChangeSetWalk(GitClient git, ObjectId from, ObjectId to, boolean authorOrCommitter, PathRegionMatcher prune) {
+        this.git = git;
+        this.from = from;
+        this.to = to;
+        this.authorOrCommitter = authorOrCommitter;
+        this.prune = prune;
+    }
+
+    /**
+     * Describes the next commit of the range.
+     *
+     * @return
+     *      null once all the commits have been described.
+     */
+    GitChangeSet next() throws IOException, InterruptedException {
+        while (batch == null || position == batch.size()) {
+            List<ObjectId> commits = null;
+            if (range != null) {
+                if (described == range.size()) {
+                    return null;
+                }
+                int end = Math.min(described + limit, range.size());
+                commits = new ArrayList<ObjectId>(range.subList(described, end));
+            }
+            Batch next = git.withRepository(new Walk(from, to, commits, prune, limit));
+            if (range == null) {
+                range = next.range;
+            }
+            batch = next.commits;
+            described = Math.min(described + limit, range.size());
+            position = 0;
+            limit = Math.min(limit * 8, MAX_BATCH);
+        }
+        return new GitChangeSet(batch.get(position++), authorOrCommitter);
+    }
+
+    /**
+     * What {@link GitChangeSet} needs to know about a commit.
+     */
+    static final class Commit implements Serializable {
+        final ObjectId id;
+        final ObjectId parent;
+        final PersonIdent author;
+        final PersonIdent committer;
+        final String message;
+        final List<Change> changes;
+
+        Commit(RevCommit commit, RevCommit parent, List<Change> changes) {
+            this.id = commit.copy();
+            this.parent = parent == null ? null : parent.copy();
+            this.author = commit.getAuthorIdent();
+            this.committer = commit.getCommitterIdent();
+            this.message = commit.getFullMessage();
+            this.changes = changes;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A file changed by a {@link Commit}.
+     */
+    static final class Change implements Serializable {
+        final char action;
+        final ObjectId src;
+        final ObjectId dst;
+        final String path;
+
+        Change(char action, ObjectId src, ObjectId dst, String path) {
+            this.action = action;
+            this.src = src;
+            this.dst = dst;
+            this.path = path;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Skips the directories that cannot contain relevant paths, remembering those it skipped.
+     * Only sees changed directories, being combined after {@link TreeFilter#ANY_DIFF}.
+     */
+    private static final class PruneFilter extends TreeFilter {
+        private final PathRegionMatcher matcher;
+        final List<String> pruned = new ArrayList<String>();
+
+        PruneFilter(PathRegionMatcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean include(TreeWalk walker) {
+            if (walker.isSubtree()) {
+                String directory = walker.getPathString() + '/';
+                if (!matcher.mayContainRelevant(directory)) {
+                    pruned.add(directory);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return new PruneFilter(matcher);
+        }
+    }
+
+    private static final class Batch implements Serializable {
+        final List<Commit> commits;
+        /**
+         * Every commit of the range, if the batch had to list them, or null.
+         */
+        final List<ObjectId> range;
+
+        Batch(List<Commit> commits, List<ObjectId> range) {
+            this.commits = commits;
+            this.range = range;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Describes the given commits, or lists the commits of the range and describes the first {@code limit} ones.
+     */
+    private static final class Walk implements RepositoryCallback<Batch> {
+        private final ObjectId from;
+        private final ObjectId to;
+        private final List<ObjectId> commits;
+        private final PathRegionMatcher prune;
+        private final int limit;
+
+        Walk(ObjectId from, ObjectId to, List<ObjectId> commits, PathRegionMatcher prune, int limit) {
+            this.from = from;
+            this.to = to;
+            this.commits = commits;
+            this.prune = prune;
+            this.limit = limit;
+        }
+
+        public Batch invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+            RevWalk walk = new RevWalk(repository);
+            TreeWalk treeWalk = new TreeWalk(repository);
+            try {
+                List<ObjectId> range = null;
+                List<ObjectId> ids = commits;
+                if (ids == null) {
+                    // only the commits that are described need their message and identities
+                    walk.setRetainBody(false);
+                    walk.markStart(walk.parseCommit(to));
+                    if (from != null) {
+                        walk.markUninteresting(walk.parseCommit(from));
+                    }
+                    range = new ArrayList<ObjectId>();
+                    for (RevCommit commit = walk.next(); commit != null; commit = walk.next()) {
+                        range.add(commit.copy());
+                        if (from == null) {
+                            break;
+                        }
+                    }
+                    ids = range.subList(0, Math.min(limit, range.size()));
+                }
+
+                PruneFilter pruneFilter = prune == null ? null : new PruneFilter(prune);
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(pruneFilter == null ? TreeFilter.ANY_DIFF : AndTreeFilter.create(TreeFilter.ANY_DIFF, pruneFilter));
+                List<Commit> described = new ArrayList<Commit>();
+                for (ObjectId id : ids) {
+                    RevCommit commit = walk.parseCommit(id);
+                    walk.parseBody(commit);
+                    if (commit.getParentCount() == 0) {
+                        treeWalk.reset();
+                        treeWalk.addTree(new EmptyTreeIterator());
+                        treeWalk.addTree(commit.getTree());
+                        described.add(new Commit(commit, null, changes(treeWalk, pruneFilter)));
+                    }
+                    for (RevCommit parent : commit.getParents()) {
+                        walk.parseHeaders(parent);
+                        treeWalk.reset(parent.getTree(), commit.getTree());
+                        described.add(new Commit(commit, parent, changes(treeWalk, pruneFilter)));
+                    }
+                }
+                return new Batch(described, range);
+            } catch (MissingObjectException e) {
+                throw new GitException("Unable to walk the commits up to " + to.name(), e);
+            } finally {
+                treeWalk.release();
+                walk.release();
+            }
+        }
+
+        private static List<Change> changes(TreeWalk treeWalk, PruneFilter pruneFilter) throws IOException {
+            List<Change> changes = new ArrayList<Change>();
+            if (pruneFilter != null) {
+                pruneFilter.pruned.clear();
+            }
+            List<DiffEntry> entries = DiffEntry.scan(treeWalk);
+            // a change of type comes as the deletion and the addition of the same path
+            Set<String> added = new HashSet<String>();
+            for (DiffEntry entry : entries) {
+                if (entry.getChangeType() == DiffEntry.ChangeType.ADD) {
+                    added.add(entry.getNewPath());
+                }
+            }
+            Set<String> typeChanged = new HashSet<String>();
+            for (DiffEntry entry : entries) {
+                switch (entry.getChangeType()) {
+                case ADD:
+                    if (!typeChanged.contains(entry.getNewPath())) {
+                        changes.add(new Change('A', null, entry.getNewId().toObjectId(), entry.getNewPath()));
+                    }
+                    break;
+                case DELETE:
+                    if (added.contains(entry.getOldPath())) {
+                        typeChanged.add(entry.getOldPath());
+                        changes.add(new Change('T', null, null, entry.getOldPath()));
+                    } else {
+                        changes.add(new Change('D', entry.getOldId().toObjectId(), null, entry.getOldPath()));
+                    }
+                    break;
+                default:
+                    if ((entry.getOldMode().getBits() & FileMode.TYPE_MASK) != (entry.getNewMode().getBits() & FileMode.TYPE_MASK)) {
+                        changes.add(new Change('T', null, null, entry.getNewPath()));
+                    } else {
+                        changes.add(new Change('M', entry.getOldId().toObjectId(), entry.getNewId().toObjectId(), entry.getNewPath()));
+                    }
+                    break;
+                }
+            }
+            if (pruneFilter != null) {
+                for (String directory : pruneFilter.pruned) {
+                    changes.add(new Change('M', null, null, directory));
+                }
+            }
+            return changes;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
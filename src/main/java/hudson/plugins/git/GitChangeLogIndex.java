@@ -0,0 +1,188 @@
+package hudson.plugins.git;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Side index of a changelog file, recording where each commit starts and ends in it,
+ * so that {@link GitChangeSetList} can tell how many commits there are and parse them one at a time.
+ *
+ * <p>
+ * The index lives next to the changelog, as "changelog.xml.index", and is written by
+ * {@link GitSCM#checkout} once the changelog is complete. A commit listed more than once in the changelog
+ * is only indexed the first time, like {@link GitChangeLogParser} does. Lines end at a line feed, a carriage return,
+ * or both, as they do for the {@link BufferedReader} the parser reads them with. An index that does not match
+ * the length of the changelog, or was written by another version, is ignored.
+ */
+/*package*/ final class GitChangeLogIndex {
+
+    private static final int VERSION = 2;
+    private static final byte[] COMMIT = {'c', 'o', 'm', 'm', 'i', 't', ' '};
+
+    /**
+     * Offsets of the first byte of each commit, and of the byte following it, in changelog order.
+     */
+    private final long[] starts;
+    private final long[] ends;
+
+    private GitChangeLogIndex(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Number of distinct commits in the changelog.
+     */
+    int size() {
+        return starts.length;
+    }
+
+    /**
+     * Reads the lines of a commit.
+     *
+     * @param i
+     *      position of the commit in the changelog.
+     */
+    List<String> readLines(RandomAccessFile changelog, int i) throws IOException {
+        byte[] bytes = new byte[(int) (ends[i] - starts[i])];
+        changelog.seek(starts[i]);
+        changelog.readFully(bytes);
+
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    static File getIndexFile(File changelog) {
+        return new File(changelog.getParentFile(), changelog.getName() + ".index");
+    }
+
+    /**
+     * Reads the index of a changelog.
+     *
+     * @return
+     *      null if the changelog has no usable index.
+     */
+    static GitChangeLogIndex read(File changelog) {
+        File indexFile = getIndexFile(changelog);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            if (in.readInt() != VERSION || in.readLong() != changelog.length()) {
+                return null;
+            }
+            int count = in.readInt();
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+            }
+            return new GitChangeLogIndex(starts, ends);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Ignoring unreadable changelog index " + indexFile, e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Scans a changelog and writes its index.
+     */
+    static void write(File changelog) throws IOException {
+        List<long[]> entries = new ArrayList<long[]>();
+        Set<String> seen = new HashSet<String>();
+
+        InputStream in = new BufferedInputStream(new FileInputStream(changelog));
+        try {
+            long[] current = null;
+            long offset = 0;
+            // start of the current line, and as much of it as we need to recognize a "commit" line
+            long lineStart = 0;
+            byte[] head = new byte[COMMIT.length + ObjectId.STRING_LENGTH];
+            int headLength = 0;
+            for (int b = in.read(); ; b = in.read()) {
+                // a "\r\n" ends a line, then an empty one, which is not a commit line either
+                if (b == '\n' || b == '\r' || b == -1) {
+                    if (isCommitLine(head, headLength)) {
+                        if (current != null) {
+                            current[1] = lineStart;
+                        }
+                        String id = new String(head, COMMIT.length, headLength - COMMIT.length, "US-ASCII").split(" ")[0];
+                        current = seen.add(id) ? new long[] {lineStart, -1} : null;
+                        if (current != null) {
+                            entries.add(current);
+                        }
+                    }
+                    if (b == -1) {
+                        break;
+                    }
+                    lineStart = offset + 1;
+                    headLength = 0;
+                } else if (headLength < head.length) {
+                    head[headLength++] = (byte) b;
+                }
+                offset++;
+            }
+            if (current != null) {
+                current[1] = offset;
+            }
+        } finally {
+            in.close();
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile(changelog))));
+        try {
+            out.writeInt(VERSION);
+            out.writeLong(changelog.length());
+            out.writeInt(entries.size());
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean isCommitLine(byte[] head, int length) {
+        if (length <= COMMIT.length) {
+            return false;
+        }
+        for (int i = 0; i < COMMIT.length; i++) {
+            if (head[i] != COMMIT[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitChangeLogIndex.class.getName());
+}
@@ -6,15 +6,17 @@ import hudson.scm.RepositoryBrowser;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
+import org.eclipse.jgit.lib.ObjectId;
 import org.xml.sax.SAXException;
 
 import javax.annotation.Nonnull;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -37,6 +39,25 @@ public class GitChangeLogParser extends ChangeLogParser {
 
     @Override public GitChangeSetList parse(Run build, RepositoryBrowser<?> browser, File changelogFile)
         throws IOException, SAXException {
+        if (BinaryChangeLog.isBinary(changelogFile)) {
+            return new GitChangeSetList(build, browser, changelogFile, BinaryChangeLog.readIndex(changelogFile, authorOrCommitter), authorOrCommitter);
+        }
+
+        final GitChangeLogIndex index = GitChangeLogIndex.read(changelogFile);
+        if (index != null) {
+            // only parse the commits that are looked at
+            return new GitChangeSetList(build, browser, changelogFile, new GitChangeSetList.Index() {
+                public int size() {
+                    return index.size();
+                }
+
+                public GitChangeSet read(RandomAccessFile changelog, int position) throws IOException {
+                    List<GitChangeSet> changeSets = parse(index.readLines(changelog, position));
+                    return changeSets.isEmpty() ? null : changeSets.get(0);
+                }
+            }, authorOrCommitter);
+        }
+
         // Parse the log file into GitChangeSet items - each one is a commit
         LineIterator lineIterator = null;
         try {
@@ -47,30 +68,59 @@ public class GitChangeLogParser extends ChangeLogParser {
         }
     }
 
-    private List<GitChangeSet> parse(Iterator<String> changelog) {
-        Set<GitChangeSet> r = new LinkedHashSet<GitChangeSet>();
-        List<String> lines = null;
+    /**
+     * Builds the change sets straight from the lines, without holding on to the lines of a commit.
+     * A commit listed more than once is only kept the first time.
+     */
+    /*package*/ List<GitChangeSet> parse(Iterator<String> changelog) {
+        List<GitChangeSet> r = new ArrayList<GitChangeSet>();
+        Set<ObjectId> seen = new HashSet<ObjectId>();
+        Set<String> seenAbbreviated = null;
+
+        GitChangeSet current = null;
+        StringBuilder message = null;
+        int lines = 0;
         while (changelog.hasNext()) {
             String line = changelog.next();
             if (line.startsWith("commit ")) {
-                if (lines != null) {
-                    r.add(parseCommit(lines, authorOrCommitter));
+                if (current != null) {
+                    current.endParsing(message);
+                    r.add(current);
                 }
-                lines = new ArrayList<String>();
+
+                String id = commitId(line);
+                boolean duplicate;
+                if (id != null && ObjectId.isId(id)) {
+                    duplicate = !seen.add(ObjectId.fromString(id));
+                } else {
+                    if (seenAbbreviated == null) {
+                        seenAbbreviated = new HashSet<String>();
+                    }
+                    duplicate = id != null && !seenAbbreviated.add(id);
+                }
+                // skip the lines of a commit we already have
+                current = duplicate ? null : new GitChangeSet(authorOrCommitter);
+                message = new StringBuilder();
+                lines = 0;
             }
 
-            if (lines != null && lines.size()<THRESHOLD)
-                lines.add(line);    // TODO: if we ignored some lines, tell the user so.
+            if (current != null && lines++ < THRESHOLD)
+                current.parseLine(line, message);    // TODO: if we ignored some lines, tell the user so.
         }
 
-        if (lines != null) {
-            r.add(parseCommit(lines, authorOrCommitter));
+        if (current != null) {
+            current.endParsing(message);
+            r.add(current);
         }
-        return new ArrayList<GitChangeSet>(r);
+        return r;
     }
 
-    private GitChangeSet parseCommit(List<String> lines, boolean authorOrCommitter) {
-        return new GitChangeSet(lines, authorOrCommitter);
+    /**
+     * Gets the commit id of a "commit" line the way {@link GitChangeSet} does, or null.
+     */
+    private static String commitId(String line) {
+        String[] tokens = line.split(" ");
+        return tokens.length > 1 ? tokens[1] : null;
     }
 
     /**
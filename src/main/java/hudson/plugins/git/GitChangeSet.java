@@ -1,5 +1,7 @@
 package hudson.plugins.git;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import hudson.MarkupText;
 import hudson.model.Hudson;
 import hudson.model.User;
@@ -9,6 +11,7 @@ import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.AffectedFile;
 import hudson.scm.EditType;
 import org.apache.commons.lang.time.FastDateFormat;
+import org.eclipse.jgit.lib.ObjectId;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
@@ -17,11 +20,11 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import static hudson.Util.fixEmpty;
 
@@ -33,18 +36,28 @@ public class GitChangeSet extends ChangeLogSet.Entry {
 
     private static final String PREFIX_AUTHOR = "author ";
     private static final String PREFIX_COMMITTER = "committer ";
-    private static final String IDENTITY = "([^<]*)<(.*)> (.*)";
 
-    private static final Pattern FILE_LOG_ENTRY = Pattern.compile("^:[0-9]{6} [0-9]{6} ([0-9a-f]{40}) ([0-9a-f]{40}) ([ACDMRTUX])(?>[0-9]+)?\t(.*)$");
-    private static final Pattern AUTHOR_ENTRY = Pattern.compile("^"
-            + PREFIX_AUTHOR + IDENTITY + "$");
-    private static final Pattern COMMITTER_ENTRY = Pattern.compile("^"
-            + PREFIX_COMMITTER + IDENTITY + "$");
-    private static final Pattern RENAME_SPLIT = Pattern.compile("^(.*?)\t(.*)$");
+    /**
+     * Positions of the source SHA1, destination SHA1 and edit mode in a raw diff line.
+     */
+    private static final int FILE_LOG_SRC = 15;
+    private static final int FILE_LOG_DST = 56;
+    private static final int FILE_LOG_MODE = 97;
 
     private static final String NULL_HASH = "0000000000000000000000000000000000000000";
     private static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ssZ";
 
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int NO_OFFSET = Integer.MIN_VALUE;
+
+    private static final Interner<String> IDENTITIES = Interners.newWeakInterner();
+    private static final Interner<String> DIRECTORIES = Interners.newWeakInterner();
+
+    /**
+     * Whether the Mailer classes are available, or null if not checked yet.
+     */
+    private static Boolean hudsonTasksMailer;
+
     /**
      * This is broken as a part of the 1.5 refactoring.
      *
@@ -70,11 +83,24 @@ public class GitChangeSet extends ChangeLogSet.Entry {
     private String author;
     private String authorEmail;
     private String authorTime;
+    /**
+     * Times as parsed from the commit, {@link #NO_TIME} if unknown, and the time zone offsets in minutes,
+     * {@link #NO_OFFSET} if the time was not given in the raw "seconds offset" form of git. For times given
+     * in that form, {@link #committerTime} and {@link #authorTime} are only formatted once asked for.
+     */
+    private long committerMillis = NO_TIME;
+    private int committerOffset = NO_OFFSET;
+    private long authorMillis = NO_TIME;
+    private int authorOffset = NO_OFFSET;
     private String comment;
     private String title;
     private String id;
     private String parentCommit;
     private Collection<Path> paths = new HashSet<Path>();
+    /**
+     * {@link #getAffectedPaths()}, computed once the change set is complete.
+     */
+    private transient Collection<String> affectedPaths;
     private boolean authorOrCommitter;
 
     /**
@@ -90,77 +116,261 @@ public class GitChangeSet extends ChangeLogSet.Entry {
         }
     }
 
+    /**
+     * Create an empty Git change set, to be filled line by line with
+     * {@link #parseLine(String, StringBuilder)} and completed with {@link #endParsing(StringBuilder)}.
+     *
+     * @param authorOrCommitter
+     */
+    /*package*/ GitChangeSet(boolean authorOrCommitter) {
+        this.authorOrCommitter = authorOrCommitter;
+    }
+
+    /**
+     * Read a Git change set written by {@link #writeTo(BinaryChangeLog.Output)}.
+     *
+     * @param in
+     * @param authorOrCommitter
+     */
+    /*package*/ GitChangeSet(BinaryChangeLog.Input in, boolean authorOrCommitter) throws IOException {
+        this.authorOrCommitter = authorOrCommitter;
+        this.id = in.readSha1();
+        this.parentCommit = in.readSha1();
+        this.committer = intern(in.readString());
+        this.committerEmail = intern(in.readString());
+        if (in.readByte() != 0) {
+            setCommitterTime(in.readText());
+        } else {
+            setCommitterIsoTime(in.readString());
+        }
+        this.author = intern(in.readString());
+        this.authorEmail = intern(in.readString());
+        if (in.readByte() != 0) {
+            setAuthorTime(in.readText());
+        } else {
+            setAuthorIsoTime(in.readString());
+        }
+        String message = in.readText();
+        if (message != null) {
+            setComment(message);
+        }
+        for (int i = in.readCount(); i > 0; i--) {
+            char action = (char) in.readByte();
+            ObjectId src = in.readObjectId();
+            ObjectId dst = in.readObjectId();
+            String directory = in.readString();
+            this.paths.add(new Path(src, dst, action, directory, in.readString(), this));
+        }
+    }
+
+    /**
+     * Create a Git change set from a commit read by {@link ChangeSetWalk}.
+     *
+     * @param commit
+     * @param authorOrCommitter
+     */
+    /*package*/ GitChangeSet(ChangeSetWalk.Commit commit, boolean authorOrCommitter) {
+        this.authorOrCommitter = authorOrCommitter;
+        this.id = commit.id.name();
+        this.parentCommit = commit.parent == null ? null : commit.parent.name();
+        this.committer = intern(commit.committer.getName());
+        this.committerEmail = intern(commit.committer.getEmailAddress());
+        this.committerMillis = commit.committer.getWhen().getTime();
+        this.committerOffset = commit.committer.getTimeZoneOffset();
+        this.author = intern(commit.author.getName());
+        this.authorEmail = intern(commit.author.getEmailAddress());
+        this.authorMillis = commit.author.getWhen().getTime();
+        this.authorOffset = commit.author.getTimeZoneOffset();
+        // git log shows every line of the message, the last one included, followed by a line break
+        String message = commit.message;
+        setComment(message.length() == 0 || message.endsWith("\n") ? message : message + '\n');
+        for (ChangeSetWalk.Change change : commit.changes) {
+            this.paths.add(new Path(change.src, change.dst, change.action, change.path, this));
+        }
+    }
+
+    /**
+     * Writes this change set in the compact form of {@link BinaryChangeLog}.
+     */
+    /*package*/ void writeTo(BinaryChangeLog.Output out) throws IOException {
+        out.writeSha1(id);
+        out.writeSha1(parentCommit);
+        out.writeString(committer);
+        out.writeString(committerEmail);
+        writeTime(out, committerMillis, committerOffset, committerTime);
+        out.writeString(author);
+        out.writeString(authorEmail);
+        writeTime(out, authorMillis, authorOffset, authorTime);
+        out.writeText(comment);
+        out.writeCount(paths.size());
+        for (Path path : paths) {
+            out.writeByte(path.action);
+            out.writeObjectId(path.src);
+            out.writeObjectId(path.dst);
+            out.writeString(path.directory);
+            out.writeString(path.name);
+        }
+    }
+
+    /**
+     * Writes a time in the raw form of git when it was given that way, so that reading it back does not involve any date parsing.
+     */
+    private static void writeTime(BinaryChangeLog.Output out, long millis, int offset, String isoTime) throws IOException {
+        if (offset != NO_OFFSET) {
+            out.writeByte(1);
+            out.writeText(millis / 1000 + " " + formatOffset(offset));
+        } else {
+            out.writeByte(0);
+            out.writeString(isoTime);
+        }
+    }
+
     private void parseCommit(List<String> lines) {
 
         StringBuilder message = new StringBuilder();
 
         for (String line : lines) {
-            if( line.length() < 1)
-                continue;
-            if (line.startsWith("commit ")) {
-                this.id = line.split(" ")[1];
-            } else if (line.startsWith("tree ")) {
-            } else if (line.startsWith("parent ")) {
-                this.parentCommit = line.split(" ")[1];
-            } else if (line.startsWith(PREFIX_COMMITTER)) {
-                Matcher committerMatcher = COMMITTER_ENTRY.matcher(line);
-                if (committerMatcher.matches()
-                        && committerMatcher.groupCount() >= 3) {
-                    this.committer = committerMatcher.group(1).trim();
-                    this.committerEmail = committerMatcher.group(2);
-                    this.committerTime = isoDateFormat(committerMatcher.group(3));
-                }
-            } else if (line.startsWith(PREFIX_AUTHOR)) {
-                Matcher authorMatcher = AUTHOR_ENTRY.matcher(line);
-                if (authorMatcher.matches() && authorMatcher.groupCount() >= 3) {
-                    this.author = authorMatcher.group(1).trim();
-                    this.authorEmail = authorMatcher.group(2);
-                    this.authorTime = isoDateFormat(authorMatcher.group(3));
-                }
-            } else if (line.startsWith("    ")) {
-                message.append(line.substring(4)).append('\n');
-            } else if (':' == line.charAt(0)) {
-                Matcher fileMatcher = FILE_LOG_ENTRY.matcher(line);
-                if (fileMatcher.matches() && fileMatcher.groupCount() >= 4) {
-                    String mode = fileMatcher.group(3);
-                    if (mode.length() == 1) {
-                        String src = null;
-                        String dst = null;
-                        String path = fileMatcher.group(4);
-                        char editMode = mode.charAt(0);
-                        if (editMode == 'M' || editMode == 'A' || editMode == 'D'
-                            || editMode == 'R' || editMode == 'C') {
-                            src = parseHash(fileMatcher.group(1));
-                            dst = parseHash(fileMatcher.group(2));
-                        }
-
-                        // Handle rename as two operations - a delete and an add
-                        if (editMode == 'R') {
-                            Matcher renameSplitMatcher = RENAME_SPLIT.matcher(path);
-                            if (renameSplitMatcher.matches() && renameSplitMatcher.groupCount() >= 2) {
-                                String oldPath = renameSplitMatcher.group(1);
-                                String newPath = renameSplitMatcher.group(2);
-                                this.paths.add(new Path(src, dst, 'D', oldPath, this));
-                                this.paths.add(new Path(src, dst, 'A', newPath, this));
-                            }
-                        }
-                        // Handle copy as an add
-                        else if (editMode == 'C') {
-                            Matcher copySplitMatcher = RENAME_SPLIT.matcher(path);
-                            if (copySplitMatcher.matches() && copySplitMatcher.groupCount() >= 2) {
-                                String newPath = copySplitMatcher.group(2);
-                                this.paths.add(new Path(src, dst, 'A', newPath, this));
-                            }
-                        }
-                        else {
-                            this.paths.add(new Path(src, dst, editMode, path, this));
-                        }
-                    }
-                }
+            parseLine(line, message);
+        }
+
+        endParsing(message);
+    }
+
+    /**
+     * Parses one line of the "git whatchanged" output of this commit.
+     *
+     * @param message
+     *      collects the lines of the commit message.
+     */
+    /*package*/ void parseLine(String line, StringBuilder message) {
+        if( line.length() < 1)
+            return;
+        if (line.startsWith("commit ")) {
+            this.id = token(line, "commit ".length());
+        } else if (line.startsWith("tree ")) {
+        } else if (line.startsWith("parent ")) {
+            this.parentCommit = token(line, "parent ".length());
+        } else if (line.startsWith(PREFIX_COMMITTER)) {
+            int lt = line.indexOf('<', PREFIX_COMMITTER.length());
+            int gt = line.lastIndexOf("> ");
+            if (lt >= 0 && gt > lt) {
+                this.committer = intern(line.substring(PREFIX_COMMITTER.length(), lt).trim());
+                this.committerEmail = intern(line.substring(lt + 1, gt));
+                setCommitterTime(line.substring(gt + 2));
+            }
+        } else if (line.startsWith(PREFIX_AUTHOR)) {
+            int lt = line.indexOf('<', PREFIX_AUTHOR.length());
+            int gt = line.lastIndexOf("> ");
+            if (lt >= 0 && gt > lt) {
+                this.author = intern(line.substring(PREFIX_AUTHOR.length(), lt).trim());
+                this.authorEmail = intern(line.substring(lt + 1, gt));
+                setAuthorTime(line.substring(gt + 2));
+            }
+        } else if (line.startsWith("    ")) {
+            message.append(line, 4, line.length()).append('\n');
+        } else if (':' == line.charAt(0)) {
+            parseFileLogEntry(line);
+        }
+    }
+
+    /**
+     * Shares the names and e-mail addresses of people among all the change sets they appear in.
+     */
+    private static String intern(String identity) {
+        return identity == null ? null : IDENTITIES.intern(identity);
+    }
+
+    /**
+     * Gets the text between the given position and the next space, like {@code line.split(" ")[1]} does for the second token.
+     */
+    private static String token(String line, int start) {
+        int end = line.indexOf(' ', start);
+        return line.substring(start, end < 0 ? line.length() : end);
+    }
+
+    /**
+     * Parses a line of the form
+     * ":100644 100644 &lt;src sha1&gt; &lt;dst sha1&gt; &lt;mode&gt;[score]\t&lt;path&gt;[\t&lt;new path&gt;]".
+     */
+    private void parseFileLogEntry(String line) {
+        // fixed layout up to the edit mode
+        if (line.length() < FILE_LOG_MODE + 2
+                || !isDigits(line, 1, 7) || line.charAt(7) != ' '
+                || !isDigits(line, 8, 14) || line.charAt(14) != ' '
+                || !isHash(line, FILE_LOG_SRC) || line.charAt(FILE_LOG_SRC + 40) != ' '
+                || !isHash(line, FILE_LOG_DST) || line.charAt(FILE_LOG_DST + 40) != ' '
+                || "ACDMRTUX".indexOf(line.charAt(FILE_LOG_MODE)) < 0) {
+            return;
+        }
+        int tab = FILE_LOG_MODE + 1;
+        while (tab < line.length() && isDigit(line.charAt(tab))) {
+            tab++; // similarity score of renames and copies
+        }
+        if (tab >= line.length() || line.charAt(tab) != '\t') {
+            return;
+        }
+
+        ObjectId src = null;
+        ObjectId dst = null;
+        char editMode = line.charAt(FILE_LOG_MODE);
+        if (editMode == 'M' || editMode == 'A' || editMode == 'D'
+            || editMode == 'R' || editMode == 'C') {
+            src = parseHash(line, FILE_LOG_SRC);
+            dst = parseHash(line, FILE_LOG_DST);
+        }
+
+        // Handle rename as two operations - a delete and an add
+        if (editMode == 'R') {
+            int split = line.indexOf('\t', tab + 1);
+            if (split >= 0) {
+                this.paths.add(new Path(src, dst, 'D', line.substring(tab + 1, split), this));
+                this.paths.add(new Path(src, dst, 'A', line.substring(split + 1), this));
+            }
+        }
+        // Handle copy as an add
+        else if (editMode == 'C') {
+            int split = line.indexOf('\t', tab + 1);
+            if (split >= 0) {
+                this.paths.add(new Path(src, dst, 'A', line.substring(split + 1), this));
+            }
+        }
+        else {
+            this.paths.add(new Path(src, dst, editMode, line.substring(tab + 1), this));
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigits(String line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(line.charAt(i))) {
+                return false;
             }
         }
+        return true;
+    }
 
-        this.comment = message.toString();
+    private static boolean isHash(String line, int start) {
+        for (int i = start; i < start + 40; i++) {
+            char c = line.charAt(i);
+            if (!isDigit(c) && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the parsing of the commit once all its lines have been given to {@link #parseLine(String, StringBuilder)}.
+     */
+    /*package*/ void endParsing(StringBuilder message) {
+        setComment(message.toString());
+    }
+
+    private void setComment(String comment) {
+        this.comment = comment;
 
         int endOfFirstLine = this.comment.indexOf('\n');
         if (endOfFirstLine == -1) {
@@ -170,6 +380,108 @@ public class GitChangeSet extends ChangeLogSet.Entry {
         }
     }
 
+    private void setCommitterTime(String time) {
+        long millis = parseRawMillis(time);
+        if (millis == NO_TIME) {
+            setCommitterIsoTime(isoDateFormat(time));
+        } else {
+            this.committerMillis = millis;
+            this.committerOffset = parseRawOffset(time);
+            this.committerTime = null;
+        }
+    }
+
+    private void setCommitterIsoTime(String time) {
+        this.committerTime = time;
+        this.committerMillis = parseIsoMillis(time);
+        this.committerOffset = NO_OFFSET;
+    }
+
+    private String getCommitterTime() {
+        if (committerTime == null && committerOffset != NO_OFFSET) {
+            committerTime = formatIso(committerMillis, committerOffset);
+        }
+        return committerTime;
+    }
+
+    private void setAuthorTime(String time) {
+        long millis = parseRawMillis(time);
+        if (millis == NO_TIME) {
+            setAuthorIsoTime(isoDateFormat(time));
+        } else {
+            this.authorMillis = millis;
+            this.authorOffset = parseRawOffset(time);
+            this.authorTime = null;
+        }
+    }
+
+    private void setAuthorIsoTime(String time) {
+        this.authorTime = time;
+        this.authorMillis = parseIsoMillis(time);
+        this.authorOffset = NO_OFFSET;
+    }
+
+    private String getAuthorTime() {
+        if (authorTime == null && authorOffset != NO_OFFSET) {
+            authorTime = formatIso(authorMillis, authorOffset);
+        }
+        return authorTime;
+    }
+
+    /**
+     * Parses the seconds of a time in the raw form of git, "1234567890 -0600".
+     *
+     * @return
+     *      {@link #NO_TIME} if the time is not exactly in that form.
+     */
+    private static long parseRawMillis(String s) {
+        int space = s.indexOf(' ');
+        if (space < 1 || space > 15 || s.length() != space + 6 || !isDigits(s, 0, space)
+                || (s.charAt(space + 1) != '+' && s.charAt(space + 1) != '-')
+                || !isDigits(s, space + 2, space + 6) || s.charAt(space + 4) > '5'
+                || s.startsWith("-0000", space + 1) /* unknown time zone, which an offset in minutes cannot tell */) {
+            return NO_TIME;
+        }
+        return Long.parseLong(s.substring(0, space)) * 1000;
+    }
+
+    /**
+     * Parses the time zone of a time accepted by {@link #parseRawMillis(String)}, in minutes.
+     */
+    private static int parseRawOffset(String s) {
+        int sign = s.length() - 5;
+        int hours = (s.charAt(sign + 1) - '0') * 10 + (s.charAt(sign + 2) - '0');
+        int minutes = (s.charAt(sign + 3) - '0') * 10 + (s.charAt(sign + 4) - '0');
+        int offset = hours * 60 + minutes;
+        return s.charAt(sign) == '-' ? -offset : offset;
+    }
+
+    private static String formatOffset(int offset) {
+        int minutes = Math.abs(offset);
+        char[] chars = {offset < 0 ? '-' : '+',
+                (char) ('0' + minutes / 600), (char) ('0' + minutes / 60 % 10),
+                (char) ('0' + minutes % 60 / 10), (char) ('0' + minutes % 10)};
+        return new String(chars);
+    }
+
+    /**
+     * Formats a time given in the raw form of git like {@link #isoDateFormat(String)} does.
+     */
+    private static String formatIso(long millis, int offset) {
+        return FastDateFormat.getInstance(ISO_8601).format(millis) + ' ' + formatOffset(offset);
+    }
+
+    private static long parseIsoMillis(String time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        try {
+            return new SimpleDateFormat(ISO_8601).parse(time).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
     /** Convert to iso date format if required */
     private String isoDateFormat(String s) {
         if (s.length() == 25 /* already in ISO 8601 */) return s;
@@ -180,22 +492,19 @@ public class GitChangeSet extends ChangeLogSet.Entry {
         return FastDateFormat.getInstance(ISO_8601).format(new Date(time * 1000)) + s.substring(i);
     }
 
-    private String parseHash(String hash) {
-        return NULL_HASH.equals(hash) ? null : hash;
+    private ObjectId parseHash(String line, int start) {
+        return line.startsWith(NULL_HASH, start) ? null : ObjectId.fromString(line.substring(start, start + 40));
     }
 
     @Exported
     public String getDate() {
-        return authorOrCommitter ? authorTime : committerTime;
+        return authorOrCommitter ? getAuthorTime() : getCommitterTime();
     }
 
     @Override
     public long getTimestamp() {
-        try {
-            return new SimpleDateFormat(ISO_8601).parse(getDate()).getTime();
-        } catch (ParseException e) {
-            return -1;
-        }
+        long millis = authorOrCommitter ? authorMillis : committerMillis;
+        return millis == NO_TIME ? -1 : millis;
     }
 
     @Override
@@ -215,9 +524,13 @@ public class GitChangeSet extends ChangeLogSet.Entry {
 
     @Override
     public Collection<String> getAffectedPaths() {
-        Collection<String> affectedPaths = new HashSet<String>(this.paths.size());
-        for (Path file : this.paths) {
-            affectedPaths.add(file.getPath());
+        Collection<String> affectedPaths = this.affectedPaths;
+        if (affectedPaths == null) {
+            Set<String> files = new HashSet<String>(paths.size() * 4 / 3 + 1);
+            for (Path file : paths) {
+                files.add(file.getPath());
+            }
+            affectedPaths = this.affectedPaths = Collections.unmodifiableSet(files);
         }
         return affectedPaths;
     }
@@ -291,13 +604,18 @@ public class GitChangeSet extends ChangeLogSet.Entry {
 	}
 
     private boolean hasHudsonTasksMailer() {
-        // TODO convert to checking for mailer plugin as plugin migrates to 1.509+
-        try {
-            Class.forName("hudson.tasks.Mailer");
-            return true;
-        } catch (ClassNotFoundException e) {
-            return false;
+        Boolean hasMailer = hudsonTasksMailer;
+        if (hasMailer == null) {
+            // TODO convert to checking for mailer plugin as plugin migrates to 1.509+
+            try {
+                Class.forName("hudson.tasks.Mailer");
+                hasMailer = true;
+            } catch (ClassNotFoundException e) {
+                hasMailer = false;
+            }
+            hudsonTasksMailer = hasMailer;
         }
+        return hasMailer;
     }
 
     private boolean isCreateAccountBasedOnEmail() {
@@ -326,7 +644,15 @@ public class GitChangeSet extends ChangeLogSet.Entry {
             csAuthorEmail = this.committerEmail;
         }
 
-        return findOrCreateUser(csAuthor, csAuthorEmail, isCreateAccountBasedOnEmail());
+        boolean createAccountBasedOnEmail = isCreateAccountBasedOnEmail();
+        User user = UserCache.get(csAuthor, csAuthorEmail, createAccountBasedOnEmail);
+        if (user == null) {
+            user = findOrCreateUser(csAuthor, csAuthorEmail, createAccountBasedOnEmail);
+            if (csAuthor != null) {
+                UserCache.put(csAuthor, csAuthorEmail, createAccountBasedOnEmail, user);
+            }
+        }
+        return user;
     }
 
     /**
@@ -380,31 +706,42 @@ public class GitChangeSet extends ChangeLogSet.Entry {
     @ExportedBean(defaultVisibility=999)
     public static class Path implements AffectedFile {
 
-        private String src;
-        private String dst;
-        private char action;
-        private String path;
-        private GitChangeSet changeSet;
+        private final ObjectId src;
+        private final ObjectId dst;
+        private final char action;
+        /**
+         * Directory of the file, including its trailing slash and shared with the other files of that
+         * directory in all change sets, and name of the file.
+         */
+        private final String directory;
+        private final String name;
+        private final GitChangeSet changeSet;
+
+        private Path(ObjectId source, ObjectId destination, char action, String filePath, GitChangeSet changeSet) {
+            this(source, destination, action, filePath.substring(0, filePath.lastIndexOf('/') + 1),
+                    filePath.substring(filePath.lastIndexOf('/') + 1), changeSet);
+        }
 
-        private Path(String source, String destination, char action, String filePath, GitChangeSet changeSet) {
+        private Path(ObjectId source, ObjectId destination, char action, String directory, String name, GitChangeSet changeSet) {
             this.src = source;
             this.dst = destination;
             this.action = action;
-            this.path = filePath;
+            this.directory = DIRECTORIES.intern(directory);
+            this.name = name;
             this.changeSet = changeSet;
         }
 
         public String getSrc() {
-            return src;
+            return src == null ? null : src.name();
         }
 
         public String getDst() {
-            return dst;
+            return dst == null ? null : dst.name();
         }
 
         @Exported(name="file")
         public String getPath() {
-            return path;
+            return directory.length() == 0 ? name : directory.concat(name);
         }
 
         public GitChangeSet getChangeSet() {
@@ -5,9 +5,18 @@ import hudson.scm.ChangeLogSet;
 import hudson.scm.RepositoryBrowser;
 import org.kohsuke.stapler.export.Exported;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
@@ -25,6 +34,14 @@ public class GitChangeSetList extends ChangeLogSet<GitChangeSet> {
             log.setParent(this);
     }
 
+    /**
+     * Creates a list that only parses the changesets it is asked for, using the index of the changelog.
+     */
+    /*package*/ GitChangeSetList(Run build, RepositoryBrowser<?> browser, File changelogFile, Index index, boolean authorOrCommitter) {
+        super(build, browser);
+        this.changeSets = new LazyChangeSets(changelogFile, index, authorOrCommitter);
+    }
+
     public boolean isEmptySet() {
         return changeSets.isEmpty();
     }
@@ -37,9 +54,136 @@ public class GitChangeSetList extends ChangeLogSet<GitChangeSet> {
         return changeSets;
     }
 
+    /**
+     * Gets a page of the changesets, in the order of {@link #getLogs()}.
+     *
+     * @param offset
+     *      position of the first changeset to return.
+     * @param limit
+     *      maximum number of changesets to return.
+     */
+    public List<GitChangeSet> getLogs(int offset, int limit) {
+        int size = changeSets.size();
+        int from = Math.min(Math.max(offset, 0), size);
+        int to = (int) Math.min((long) from + Math.max(limit, 0), size);
+        return new ArrayList<GitChangeSet>(changeSets.subList(from, to));
+    }
+
+    /**
+     * Gets the number of changesets, without parsing them.
+     */
+    public int size() {
+        return changeSets.size();
+    }
+
     @Exported
     public String getKind() {
         return "git";
     }
 
+    /**
+     * Tells where each changeset of a changelog is, so that they can be read one at a time.
+     */
+    /*package*/ interface Index {
+        /**
+         * Number of distinct changesets in the changelog.
+         */
+        int size();
+
+        /**
+         * Reads the changeset at the given position of the changelog, or returns null if there is none.
+         */
+        GitChangeSet read(RandomAccessFile changelog, int position) throws IOException;
+    }
+
+    /**
+     * Changesets parsed from the changelog when first needed, and kept only as long as memory allows.
+     */
+    private final class LazyChangeSets extends AbstractList<GitChangeSet> implements RandomAccess {
+        /**
+         * Number of changesets parsed each time the changelog is opened.
+         */
+        private static final int BATCH = 64;
+
+        private final File changelogFile;
+        private final Index index;
+        private final boolean authorOrCommitter;
+        private final SoftReference<GitChangeSet>[] parsed;
+
+        @SuppressWarnings("unchecked")
+        LazyChangeSets(File changelogFile, Index index, boolean authorOrCommitter) {
+            this.changelogFile = changelogFile;
+            this.index = index;
+            this.authorOrCommitter = authorOrCommitter;
+            this.parsed = new SoftReference[index.size()];
+        }
+
+        @Override
+        public int size() {
+            return parsed.length;
+        }
+
+        @Override
+        public synchronized GitChangeSet get(int i) {
+            // same order as the fully parsed list, which reverses the changelog
+            int position = parsed.length - 1 - i;
+            GitChangeSet changeSet = getParsed(position);
+            if (changeSet == null) {
+                changeSet = parse(position);
+            }
+            return changeSet;
+        }
+
+        private GitChangeSet getParsed(int position) {
+            SoftReference<GitChangeSet> ref = parsed[position];
+            return ref == null ? null : ref.get();
+        }
+
+        /**
+         * Parses the changeset at the given position, along with the ones that follow it in the order of
+         * {@link #get(int)}, up to {@link #BATCH} changesets, so that iterating opens the changelog once per batch.
+         */
+        private GitChangeSet parse(int position) {
+            GitChangeSet changeSet = null;
+            int last = Math.max(position - BATCH + 1, 0);
+            try {
+                RandomAccessFile changelog = new RandomAccessFile(changelogFile, "r");
+                try {
+                    for (int p = position; p >= last; p--) {
+                        if (p != position && getParsed(p) != null) {
+                            continue;
+                        }
+                        GitChangeSet c = parse(changelog, p);
+                        if (p == position) {
+                            changeSet = c;
+                        }
+                    }
+                } finally {
+                    changelog.close();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read commits #" + last + " to #" + position + " of " + changelogFile, e);
+            }
+            if (changeSet == null) {
+                changeSet = store(position, new GitChangeSet(Collections.<String>emptyList(), authorOrCommitter));
+            }
+            return changeSet;
+        }
+
+        private GitChangeSet parse(RandomAccessFile changelog, int position) throws IOException {
+            GitChangeSet changeSet = index.read(changelog, position);
+            if (changeSet == null) {
+                return null;
+            }
+            return store(position, changeSet);
+        }
+
+        private GitChangeSet store(int position, GitChangeSet changeSet) {
+            changeSet.setParent(GitChangeSetList.this);
+            parsed[position] = new SoftReference<GitChangeSet>(changeSet);
+            return changeSet;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitChangeSetList.class.getName());
 }
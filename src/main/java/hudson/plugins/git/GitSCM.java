@@ -23,16 +23,27 @@ import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
 import hudson.plugins.git.extensions.impl.AuthorInChangelog;
 import hudson.plugins.git.extensions.impl.BuildChooserSetting;
 import hudson.plugins.git.extensions.impl.ChangelogToBranch;
+import hudson.plugins.git.extensions.impl.CloneOption;
+import hudson.plugins.git.extensions.impl.MessageExclusion;
+import hudson.plugins.git.extensions.impl.MirrorCache;
+import hudson.plugins.git.extensions.impl.MirrorPoll;
+import hudson.plugins.git.extensions.impl.ParallelFetch;
+import hudson.plugins.git.extensions.impl.PathRestriction;
 import hudson.plugins.git.extensions.impl.PreBuildMerge;
+import hudson.plugins.git.extensions.impl.PruneStaleBranch;
+import hudson.plugins.git.extensions.impl.RemoteBranchesPoll;
+import hudson.plugins.git.extensions.impl.UserExclusion;
 import hudson.plugins.git.opt.PreBuildMergeOptions;
 import hudson.plugins.git.util.Build;
 import hudson.plugins.git.util.*;
 import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
 import hudson.scm.*;
 import hudson.security.ACL;
 import hudson.tasks.Builder;
 import hudson.tasks.Publisher;
 import hudson.triggers.SCMTrigger;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.DescribableList;
 import hudson.util.FormValidation;
 import hudson.util.IOException2;
@@ -40,8 +51,14 @@ import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.URIish;
@@ -52,6 +69,7 @@ import org.jenkinsci.plugins.gitclient.FetchCommand;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.JGitTool;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
@@ -67,6 +85,15 @@ import java.io.Serializable;
 import java.io.Writer;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -102,6 +129,7 @@ public class GitSCM extends GitSCMBackwardCompatibility {
      */
     private List<UserRemoteConfig> userRemoteConfigs;
     private transient List<RemoteConfig> remoteRepositories;
+    private transient volatile BranchSpecMatcher branchSpecMatcher;
     /**
      * All the branches that we wish to care about building.
      */
@@ -496,24 +524,98 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         return branch;
     }
 
+    /**
+     * When polling all remote branches without a workspace, records the matching remote branches
+     * this build saw but did not build, so that polling does not keep asking to build them.
+     */
     @Override
     public SCMRevisionState calcRevisionsFromBuild(Run<?, ?> abstractBuild, FilePath workspace, Launcher launcher, TaskListener taskListener) throws IOException, InterruptedException {
-        return SCMRevisionState.NONE;
+        if (workspace == null || !isRemoteBranchesPolling()) {
+            return SCMRevisionState.NONE;
+        }
+        try {
+            EnvVars environment = abstractBuild.getEnvironment(taskListener);
+            GitClient git = createClient(taskListener, environment, abstractBuild, workspace);
+            if (!git.hasGitRepo()) {
+                return SCMRevisionState.NONE;
+            }
+            BuildData buildData = fixNull(getBuildData(abstractBuild));
+            Map<String, ObjectId> unbuilt = new HashMap<String, ObjectId>();
+            for (Branch b : git.getRemoteBranches()) {
+                String name = StringUtils.removeStart(b.getName(), "refs/remotes/");
+                if (matchesBranchSpecs(name, environment) && !buildData.hasBeenBuilt(b.getSHA1())) {
+                    unbuilt.put(name, b.getSHA1());
+                }
+            }
+            return new RemoteBranchesRevisionState(unbuilt);
+        } catch (GitException e) {
+            LOGGER.log(Level.FINE, "Failed to record the remote branches of " + abstractBuild, e);
+            return SCMRevisionState.NONE;
+        }
     }
 
     @Override
     public boolean requiresWorkspaceForPolling() {
+        boolean mirrorPolling = getExtensions().get(MirrorPoll.class) != null;
         for (GitSCMExtension ext : getExtensions()) {
-            if (ext.requiresWorkspaceForPolling()) return true;
+            if (ext.requiresWorkspaceForPolling() && !(mirrorPolling && isCheckedInMirror(ext))) return true;
         }
         // TODO would need to use hudson.plugins.git.util.GitUtils.getPollEnvironment
-        return getSingleBranch(new EnvVars()) == null;
+        return getSingleBranch(new EnvVars()) == null && !isRemoteBranchesPolling();
+    }
+
+    /**
+     * Whether {@link MirrorPoll} lets an extension that requires a workspace for polling do without,
+     * by checking its exclusions in a {@link PollingMirror} instead.
+     */
+    private static boolean isCheckedInMirror(GitSCMExtension ext) {
+        return ext instanceof PathRestriction || ext instanceof UserExclusion
+                || ext instanceof MessageExclusion || ext instanceof AuthorInChangelog;
+    }
+
+    /**
+     * Whether the remote branches that {@link DefaultBuildChooser} would consider can be determined
+     * by listing the heads of the remote repositories, rather than by fetching into a workspace.
+     *
+     * <p>
+     * This requires every remote to use the default refspec, so that "refs/heads/BRANCH" of remote "NAME"
+     * is known as "NAME/BRANCH", and a build chooser whose candidates are exactly the matching remote
+     * branches that have not been built. As polling cannot tell which of those the build chooser skips
+     * for being the ancestor of another one, it has to be asked for with {@link RemoteBranchesPoll}.
+     */
+    private boolean isRemoteBranchesPolling() {
+        if (getExtensions().get(RemoteBranchesPoll.class) == null) {
+            return false;
+        }
+        if (getBuildChooser().getClass() != DefaultBuildChooser.class) {
+            return false;
+        }
+        List<RemoteConfig> repositories = getRepositories();
+        if (repositories.isEmpty()) {
+            return false;
+        }
+        for (RemoteConfig repository : repositories) {
+            List<RefSpec> refSpecs = repository.getFetchRefSpecs();
+            if (refSpecs.size() != 1) {
+                return false;
+            }
+            RefSpec refSpec = refSpecs.get(0);
+            if (!"refs/heads/*".equals(refSpec.getSource())
+                    || !("refs/remotes/" + repository.getName() + "/*").equals(refSpec.getDestination())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesBranchSpecs(String branchName, EnvVars environment) {
+        return getBranchSpecMatcher(environment).matches(branchName);
     }
 
     @Override
     public PollingResult compareRemoteRevisionWith(Job<?, ?> project, Launcher launcher, FilePath workspace, final TaskListener listener, SCMRevisionState baseline) throws IOException, InterruptedException {
         try {
-            return compareRemoteRevisionWithImpl( project, launcher, workspace, listener);
+            return compareRemoteRevisionWithImpl( project, launcher, workspace, listener, baseline);
         } catch (GitException e){
             throw new IOException2(e);
         }
@@ -534,7 +636,7 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         return j;
     }
 
-    private PollingResult compareRemoteRevisionWithImpl(Job<?, ?> project, Launcher launcher, FilePath workspace, final TaskListener listener) throws IOException, InterruptedException {
+    private PollingResult compareRemoteRevisionWithImpl(Job<?, ?> project, Launcher launcher, FilePath workspace, final TaskListener listener, SCMRevisionState baseline) throws IOException, InterruptedException {
         // Poll for changes. Are there any unbuilt revisions that Hudson ought to build ?
 
         listener.getLogger().println("Using strategy: " + getBuildChooser().getDisplayName());
@@ -563,12 +665,17 @@ public class GitSCM extends GitSCMBackwardCompatibility {
 
             GitClient git = createClient(listener, environment, project, Jenkins.getInstance(), null);
 
-            String gitRepo = getParamExpandedRepos(lastBuild, listener).get(0).getURIs().get(0).toString();
-            ObjectId head = git.getHeadRev(gitRepo, singleBranch);
+            RemoteConfig remoteRepository = getParamExpandedRepos(lastBuild, listener).get(0);
+            String gitRepo = remoteRepository.getURIs().get(0).toString();
+            ObjectId head = getRemoteHeadRev(git, gitRepo, remoteRepository.getName(), singleBranch);
             if (head != null){
                 listener.getLogger().println("[poll] Latest remote head revision is: " + head.getName());
                 if (buildData.lastBuild.getMarked().getSha1().equals(head)) {
                     return NO_CHANGES;
+                } else if (isMirrorPolling()
+                        && findNotExcluded(project, environment, getParamExpandedRepos(lastBuild, listener),
+                                Collections.singletonMap(singleBranch, head), listener, buildData) == null) {
+                    return NO_CHANGES;
                 } else {
                     return BUILD_NOW;
                 }
@@ -578,6 +685,19 @@ public class GitSCM extends GitSCMBackwardCompatibility {
             }
         }
 
+        // fast remote polling of all the branches matching wildcard or multiple branch specs
+        if (singleBranch == null
+            && buildData.lastBuild != null
+            && !requiresWorkspaceForPolling()
+           ) {
+
+            final EnvVars environment = project instanceof AbstractProject ? GitUtils.getPollEnvironment((AbstractProject) project, workspace, launcher, listener, false) : new EnvVars();
+
+            GitClient git = createClient(listener, environment, project, Jenkins.getInstance(), null);
+
+            return compareRemoteBranchesWith(project, git, getParamExpandedRepos(lastBuild, listener), buildData, environment, listener, baseline);
+        }
+
         final EnvVars environment = project instanceof AbstractProject ? GitUtils.getPollEnvironment((AbstractProject) project, workspace, launcher, listener) : new EnvVars();
 
         FilePath workingDirectory = workingDirectory(project,workspace,environment,listener);
@@ -616,6 +736,156 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         }
     }
 
+    /**
+     * Lists the heads of every remote repository and looks for a branch matching the branch specifiers
+     * whose head has not been built yet.
+     *
+     * <p>
+     * Branches that were already known not to need a build when the baseline was recorded
+     * (see {@link #calcRevisionsFromBuild(Run, FilePath, Launcher, TaskListener)}) are ignored,
+     * and so are new branches whose new commits are all excluded.
+     */
+    private PollingResult compareRemoteBranchesWith(Job<?, ?> project, GitClient git, List<RemoteConfig> repositories, BuildData buildData,
+                                                    EnvVars environment, TaskListener listener, SCMRevisionState baseline) throws IOException, InterruptedException {
+        RemoteBranchesRevisionState known = baseline instanceof RemoteBranchesRevisionState ? (RemoteBranchesRevisionState) baseline : null;
+        Map<String, ObjectId> unbuilt = new HashMap<String, ObjectId>();
+        Map<String, ObjectId> newBranches = new LinkedHashMap<String, ObjectId>();
+
+        List<UserRemoteConfig> configs = getUserRemoteConfigs();
+        for (int i = 0; i < repositories.size(); i++) {
+            RemoteConfig repository = repositories.get(i);
+            String url = repository.getURIs().get(0).toString();
+            String credentialsId = i < configs.size() ? configs.get(i).getCredentialsId() : null;
+            for (Map.Entry<String, ObjectId> head : RemoteRefSnapshotService.getHeads(git, url, credentialsId).entrySet()) {
+                String ref = head.getKey();
+                if (!ref.startsWith(Constants.R_HEADS)) {
+                    continue;
+                }
+                String branch = repository.getName() + "/" + ref.substring(Constants.R_HEADS.length());
+                ObjectId sha1 = head.getValue();
+                if (!matchesBranchSpecs(branch, environment) || buildData.hasBeenBuilt(sha1)) {
+                    continue;
+                }
+                unbuilt.put(branch, sha1);
+                if (known == null || !known.isKnown(branch, sha1)) {
+                    newBranches.put(branch, sha1);
+                }
+            }
+        }
+
+        String newBranch = null;
+        if (!newBranches.isEmpty()) {
+            if (isMirrorPolling() && buildData.lastBuild.getMarked() != null) {
+                newBranch = findNotExcluded(project, environment, repositories, newBranches, listener, buildData);
+            } else {
+                newBranch = newBranches.keySet().iterator().next();
+            }
+        }
+
+        RemoteBranchesRevisionState remote = new RemoteBranchesRevisionState(unbuilt);
+        if (newBranch != null) {
+            listener.getLogger().println("[poll] Found unbuilt remote branch " + newBranch + " at " + unbuilt.get(newBranch).name());
+            return new PollingResult(baseline, remote, PollingResult.Change.SIGNIFICANT);
+        }
+        return new PollingResult(baseline, remote, PollingResult.Change.NONE);
+    }
+
+    /**
+     * Whether the new heads found when polling without a workspace are checked against the exclusions
+     * in a {@link PollingMirror}, which {@link MirrorPoll} asks for.
+     */
+    private boolean isMirrorPolling() {
+        return getExtensions().get(MirrorPoll.class) != null && hasRevExclusions();
+    }
+
+    /**
+     * Whether some extension may disregard the commits found during polling,
+     * in which case a new head does not necessarily call for a build.
+     */
+    private boolean hasRevExclusions() {
+        for (GitSCMExtension ext : extensions) {
+            if (Util.isOverridden(GitSCMExtension.class, ext.getClass(), "isRevExcluded",
+                    GitSCM.class, GitClient.class, GitChangeSet.class, TaskListener.class, BuildData.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a head of the remote repositories that has commits which are not excluded, without a workspace.
+     *
+     * <p>
+     * The repositories are fetched into their {@link PollingMirror} on the controller, where the commits
+     * since the last build are walked just like {@link #isRevExcluded(GitClient, Revision, TaskListener, BuildData)}
+     * does in a workspace. The last build is known by the commit it {@linkplain Build#getMarked() marked},
+     * as the commit it actually built, such as the result of a merge, may never have been pushed.
+     *
+     * @param heads
+     *      the heads to look at, by name.
+     * @return
+     *      the name of the first head with commits that are not excluded, or null if all their commits are.
+     */
+    private String findNotExcluded(Job<?, ?> project, EnvVars environment, List<RemoteConfig> repositories,
+                                   Map<String, ObjectId> heads, TaskListener listener, BuildData buildData) throws IOException, InterruptedException {
+        String entry = PollingMirror.getEntry(repositories);
+        Lock lock = PollingMirror.getLock(entry);
+        lock.lock();
+        try {
+            File dir = PollingMirror.getDir(entry);
+            GitClient git = createClient(listener, environment, project, Jenkins.getInstance(), new FilePath(dir));
+            if (!new File(dir, ".git/HEAD").exists()) {
+                listener.getLogger().println("[poll] Creating git repository in " + dir);
+                git.init();
+            }
+            git.withRepository(PollingMirror.configure());
+            listener.getLogger().println("[poll] Fetching changes to check them against the exclusions");
+            for (RemoteConfig repository : repositories) {
+                fetchIntoMirror(git, repository);
+            }
+            PollingMirror.touch(entry);
+
+            ObjectId from = buildData.lastBuild.getMarked().getSha1();
+            for (Map.Entry<String, ObjectId> head : heads.entrySet()) {
+                if (!isRevExcluded(git, from, new Revision(head.getValue()), listener, buildData)) {
+                    return head.getKey();
+                }
+            }
+            listener.getLogger().println("[poll] All the new commits are excluded");
+            return null;
+        } finally {
+            lock.unlock();
+            PollingMirror.evict(entry, listener);
+        }
+    }
+
+    /**
+     * Resolves a branch of the remote repository without a workspace.
+     *
+     * <p>
+     * The heads of the remote repository are obtained through {@link RemoteRefSnapshotService}, so that
+     * jobs polling the same repository share a single "git ls-remote". Branch specifiers that do not name
+     * a head of the repository (such as tags) are resolved by asking the remote repository directly.
+     */
+    private ObjectId getRemoteHeadRev(GitClient git, String url, String remoteName, String branch) throws InterruptedException {
+        List<UserRemoteConfig> configs = getUserRemoteConfigs();
+        String credentialsId = configs.isEmpty() ? null : configs.get(0).getCredentialsId();
+        Map<String, ObjectId> heads = RemoteRefSnapshotService.getHeads(git, url, credentialsId);
+
+        String ref = branch;
+        if (ref.startsWith(remoteName + "/")) {
+            ref = ref.substring(remoteName.length() + 1);
+        }
+        if (!ref.startsWith("refs/")) {
+            ref = "refs/heads/" + ref;
+        }
+        ObjectId head = heads.get(ref);
+        if (head != null) {
+            return head;
+        }
+        return git.getHeadRev(url, branch);
+    }
+
     /**
      * Allows {@link Builder}s and {@link Publisher}s to access a configured {@link GitClient} object to
      * perform additional git operations.
@@ -675,7 +945,26 @@ public class GitSCM extends GitSCMBackwardCompatibility {
     private void fetchFrom(GitClient git,
             TaskListener listener,
             RemoteConfig remoteRepository) throws InterruptedException, IOException {
+        setRemoteUrls(git, remoteRepository);
+        fetchUrls(git, listener, remoteRepository);
+    }
 
+    /**
+     * Fetches from a remote repository into a mirror shared by several jobs.
+     * Unlike {@link #fetchFrom(GitClient, TaskListener, RemoteConfig)}, the extensions of the job do not decorate the
+     * fetch, as they act on the workspace, for instance cleaning it.
+     */
+    private void fetchIntoMirror(GitClient git, RemoteConfig remoteRepository) throws InterruptedException {
+        setRemoteUrls(git, remoteRepository);
+        for (URIish url : remoteRepository.getURIs()) {
+            executeFetch(git.fetch_().from(url, remoteRepository.getFetchRefSpecs()), url);
+        }
+    }
+
+    /**
+     * Records the URLs of a remote repository in the configuration of the local repository.
+     */
+    private void setRemoteUrls(GitClient git, RemoteConfig remoteRepository) throws InterruptedException {
         boolean first = true;
         for (URIish url : remoteRepository.getURIs()) {
             try {
@@ -685,18 +974,44 @@ public class GitSCM extends GitSCMBackwardCompatibility {
                 } else {
                     git.addRemoteUrl(remoteRepository.getName(), url.toPrivateASCIIString());
                 }
-
-                FetchCommand fetch = git.fetch_().from(url, remoteRepository.getFetchRefSpecs());
-                for (GitSCMExtension extension : extensions) {
-                    extension.decorateFetchCommand(this, git, listener, fetch);
-                }
-                fetch.execute();
             } catch (GitException ex) {
                 throw new GitException("Failed to fetch from "+url.toString(), ex);
             }
         }
     }
 
+    /**
+     * Fetches from each URL of a remote repository, whose URLs were {@linkplain #setRemoteUrls(GitClient, RemoteConfig) set}.
+     */
+    private void fetchUrls(GitClient git, TaskListener listener, RemoteConfig remoteRepository) throws InterruptedException, IOException {
+        for (URIish url : remoteRepository.getURIs()) {
+            executeFetch(prepareFetch(git, listener, remoteRepository, url), url);
+        }
+    }
+
+    /**
+     * Creates the command fetching from a URL of a remote repository, as decorated by the extensions.
+     */
+    private FetchCommand prepareFetch(GitClient git, TaskListener listener, RemoteConfig remoteRepository, URIish url) throws InterruptedException, IOException {
+        try {
+            FetchCommand fetch = git.fetch_().from(url, remoteRepository.getFetchRefSpecs());
+            for (GitSCMExtension extension : extensions) {
+                extension.decorateFetchCommand(this, git, listener, fetch);
+            }
+            return fetch;
+        } catch (GitException ex) {
+            throw new GitException("Failed to fetch from "+url.toString(), ex);
+        }
+    }
+
+    private static void executeFetch(FetchCommand fetch, URIish url) throws InterruptedException {
+        try {
+            fetch.execute();
+        } catch (GitException ex) {
+            throw new GitException("Failed to fetch from "+url.toString(), ex);
+        }
+    }
+
     private RemoteConfig newRemoteConfig(String name, String refUrl, RefSpec... refSpec) {
 
         try {
@@ -915,38 +1230,250 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         List<RemoteConfig> repos = getParamExpandedRepos(build, listener);
         if (repos.isEmpty())    return; // defensive check even though this is an invalid configuration
 
-        if (git.hasGitRepo()) {
-            // It's an update
-            if (repos.size() == 1)
-                log.println("Fetching changes from the remote Git repository");
-            else
-                log.println(MessageFormat.format("Fetching changes from {0} remote Git repositories", repos.size()));
-        } else {
-            log.println("Cloning the remote Git repository");
+        Map<RemoteConfig, NodeMirror> mirrors = new LinkedHashMap<RemoteConfig, NodeMirror>();
+        try {
+            if (getExtensions().get(MirrorCache.class) != null) {
+                Node node = workspaceToNode(git.getWorkTree());
+                final Map<RemoteConfig, NodeMirror> all = new HashMap<RemoteConfig, NodeMirror>();
+                for (RemoteConfig remoteRepository : repos) {
+                    NodeMirror mirror = NodeMirror.of(node, remoteRepository.getURIs().get(0).toPrivateASCIIString());
+                    if (mirror != null) {
+                        all.put(remoteRepository, mirror);
+                    }
+                }
+                // lock the mirrors in the same order in every build, so that builds sharing some cannot deadlock
+                List<RemoteConfig> byMirror = new ArrayList<RemoteConfig>(all.keySet());
+                Collections.sort(byMirror, new Comparator<RemoteConfig>() {
+                    public int compare(RemoteConfig rc1, RemoteConfig rc2) {
+                        return all.get(rc1).getEntry().compareTo(all.get(rc2).getEntry());
+                    }
+                });
+                for (RemoteConfig remoteRepository : byMirror) {
+                    if (lockMirror(build, node, all.get(remoteRepository), remoteRepository, listener)) {
+                        mirrors.put(remoteRepository, all.get(remoteRepository));
+                    }
+                }
+            }
 
-            RemoteConfig rc = repos.get(0);
-            try {
-                CloneCommand cmd = git.clone_().url(rc.getURIs().get(0).toPrivateString()).repositoryName(rc.getName());
-                for (GitSCMExtension ext : extensions) {
-                    ext.decorateCloneCommand(this, build, git, listener, cmd);
+            if (git.hasGitRepo()) {
+                // It's an update
+                if (repos.size() == 1)
+                    log.println("Fetching changes from the remote Git repository");
+                else
+                    log.println(MessageFormat.format("Fetching changes from {0} remote Git repositories", repos.size()));
+            } else {
+                log.println("Cloning the remote Git repository");
+
+                RemoteConfig rc = repos.get(0);
+                try {
+                    CloneCommand cmd = git.clone_().url(rc.getURIs().get(0).toPrivateString()).repositoryName(rc.getName());
+                    for (GitSCMExtension ext : extensions) {
+                        ext.decorateCloneCommand(this, build, git, listener, cmd);
+                    }
+                    CloneOption cloneOption = getExtensions().get(CloneOption.class);
+                    if (mirrors.containsKey(rc) && (cloneOption == null || isBlank(cloneOption.getReference()))) {
+                        cmd.reference(mirrors.get(rc).getDir().getRemote());
+                    }
+                    cmd.execute();
+                } catch (GitException ex) {
+                    String message = "Error cloning remote repo '" + rc.getName() + "'";
+                    listener.error(message);
+                    throw new AbortException(message);
                 }
-                cmd.execute();
-            } catch (GitException ex) {
-                String message = "Error cloning remote repo '" + rc.getName() + "'";
-                listener.error(message);
-                throw new AbortException(message);
+            }
+
+            // once borrowed from, a mirror is not evicted, and other builds can fetch into it while this one fetches
+            for (Iterator<NodeMirror> i = mirrors.values().iterator(); i.hasNext();) {
+                NodeMirror mirror = i.next();
+                try {
+                    mirror.lend(git.getWorkTree());
+                } finally {
+                    mirror.getLock().unlock();
+                    i.remove();
+                }
+            }
+
+            if (repos.size() > 1 && getExtensions().get(ParallelFetch.class) != null && canFetchInParallel(listener)) {
+                fetchInParallel(git, listener, repos);
+            } else {
+                for (RemoteConfig remoteRepository : repos) {
+                    try {
+                        fetchFrom(git, listener, remoteRepository);
+                    } catch (GitException ex) {
+                        throw fetchFailed(listener, remoteRepository);
+                    }
+                }
+            }
+        } finally {
+            for (NodeMirror mirror : mirrors.values()) {
+                mirror.getLock().unlock();
             }
         }
+    }
+
+    /* Allow retry by throwing AbortException instead of
+     * GitException. See JENKINS-20531. */
+    private static AbortException fetchFailed(TaskListener listener, RemoteConfig remoteRepository) {
+        String message = "Error fetching remote repo '" + remoteRepository.getName() + "'";
+        listener.error(message);
+        return new AbortException(message);
+    }
+
+    /**
+     * Tells whether the fetches of {@link ParallelFetch} can run at the same time in the workspace.
+     * A fetch that prunes rewrites the packed refs, and a shallow one the list of shallow commits, each under a lock
+     * file that makes any other fetch doing the same fail, so such fetches are run one after the other.
+     */
+    private boolean canFetchInParallel(TaskListener listener) {
+        CloneOption cloneOption = getExtensions().get(CloneOption.class);
+        if (getExtensions().get(PruneStaleBranch.class) != null || (cloneOption != null && cloneOption.isShallow())) {
+            listener.getLogger().println("Fetching from the remote repositories one after the other, as fetches that prune or are shallow cannot run in parallel");
+            return false;
+        }
+        return true;
+    }
 
+    /**
+     * Fetches from several remote repositories at the same time, with at most {@link #FETCH_CONCURRENCY} fetches
+     * running on the node of the workspace, counting those of other builds.
+     *
+     * <p>
+     * The remote URLs are set and the fetch commands decorated beforehand, one repository after the other, as git
+     * cannot update its configuration from several processes at once, and extensions may clean the workspace
+     * when decorating. Only the fetches themselves run in parallel, with automatic garbage collection turned off
+     * in the workspace meanwhile, so that no fetch starts it while the others still write objects.
+     * The URLs of a given remote repository are fetched from one after the other.
+     */
+    private void fetchInParallel(final GitClient git, final TaskListener listener, List<RemoteConfig> repos) throws IOException, InterruptedException {
+        // extensions may act on the workspace when decorating a fetch, so that is done here too
+        Map<RemoteConfig, Map<URIish, FetchCommand>> commands = new LinkedHashMap<RemoteConfig, Map<URIish, FetchCommand>>();
         for (RemoteConfig remoteRepository : repos) {
             try {
-                fetchFrom(git, listener, remoteRepository);
+                setRemoteUrls(git, remoteRepository);
+                Map<URIish, FetchCommand> urls = new LinkedHashMap<URIish, FetchCommand>();
+                for (URIish url : remoteRepository.getURIs()) {
+                    urls.put(url, prepareFetch(git, listener, remoteRepository, url));
+                }
+                commands.put(remoteRepository, urls);
             } catch (GitException ex) {
-                /* Allow retry by throwing AbortException instead of
-                 * GitException. See JENKINS-20531. */
-                String message = "Error fetching remote repo '" + remoteRepository.getName() + "'";
-                listener.error(message);
-                throw new AbortException(message);
+                throw fetchFailed(listener, remoteRepository);
+            }
+        }
+
+        final Semaphore permits = getFetchPermits(workspaceToNode(git.getWorkTree()));
+        String autoGc = git.withRepository(new SetAutoGc("0"));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(repos.size(), FETCH_CONCURRENCY), new DaemonThreadFactory());
+        try {
+            Map<RemoteConfig, Future<Void>> fetches = new LinkedHashMap<RemoteConfig, Future<Void>>();
+            for (Map.Entry<RemoteConfig, Map<URIish, FetchCommand>> command : commands.entrySet()) {
+                final Map<URIish, FetchCommand> urls = command.getValue();
+                fetches.put(command.getKey(), executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException, InterruptedException {
+                        permits.acquire();
+                        try {
+                            for (Map.Entry<URIish, FetchCommand> url : urls.entrySet()) {
+                                executeFetch(url.getValue(), url.getKey());
+                            }
+                            return null;
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                }));
+            }
+            for (Map.Entry<RemoteConfig, Future<Void>> fetch : fetches.entrySet()) {
+                try {
+                    fetch.getValue().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof GitException) {
+                        throw fetchFailed(listener, fetch.getKey());
+                    } else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IOException2(cause);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            git.withRepository(new SetAutoGc(autoGc));
+        }
+    }
+
+    /**
+     * Sets gc.auto in the configuration of a repository, or unsets it if null, and returns its previous value.
+     */
+    private static final class SetAutoGc implements RepositoryCallback<String> {
+        private final String value;
+
+        SetAutoGc(String value) {
+            this.value = value;
+        }
+
+        public String invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+            StoredConfig config = repository.getConfig();
+            String previous = config.getString("gc", null, "auto");
+            if (value == null) {
+                config.unset("gc", null, "auto");
+            } else {
+                config.setString("gc", null, "auto", value);
+            }
+            config.save();
+            return previous;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static Semaphore getFetchPermits(Node node) {
+        String key = node.getNodeName();
+        Semaphore permits;
+        while (null == (permits = fetchPermits.get(key))) {
+            fetchPermits.putIfAbsent(key, new Semaphore(FETCH_CONCURRENCY));
+        }
+        return permits;
+    }
+
+    /**
+     * Limits the fetches running at the same time on each node, by node name. Lazy populated, but never purge, except on restart.
+     */
+    private static final ConcurrentMap<String, Semaphore> fetchPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Brings the {@link NodeMirror} of a remote repository on the node of the workspace up to date,
+     * and keeps it locked so that it stays as is until the workspace has borrowed its objects.
+     *
+     * @return
+     *      true if the mirror was locked, false if it is not usable, in which case the workspace does without.
+     */
+    private boolean lockMirror(Run<?, ?> build, Node node, NodeMirror mirror, RemoteConfig remoteRepository, TaskListener listener) throws IOException, InterruptedException {
+        boolean locked = false;
+        mirror.getLock().lock();
+        try {
+            FilePath dir = mirror.getDir();
+            GitClient client = createClient(listener, build.getEnvironment(listener), build.getParent(), node, dir);
+            if (!mirror.getGitDir().child("HEAD").exists()) {
+                listener.getLogger().println("Creating a mirror of " + remoteRepository.getName() + " in " + dir);
+                client.init();
+            }
+            client.withRepository(NodeMirror.configure());
+            listener.getLogger().println("Fetching changes into the mirror of " + remoteRepository.getName());
+            fetchIntoMirror(client, remoteRepository);
+            dir.touch(System.currentTimeMillis());
+            mirror.evict(getGitExe(node, listener), listener);
+            locked = true;
+            return true;
+        } catch (GitException e) {
+            e.printStackTrace(listener.error("Failed to update the mirror of " + remoteRepository.getName() + ", doing without it"));
+            return false;
+        } finally {
+            if (!locked) {
+                mirror.getLock().unlock();
             }
         }
     }
@@ -1000,6 +1527,24 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         if (changelogFile != null) {
             computeChangeLog(git, revToBuild.revision, listener, previousBuildData, new FilePath(changelogFile),
                     new BuildChooserContextImpl(build.getParent(), build, environment));
+            boolean binary = false;
+            if (BINARY_CHANGELOG) {
+                try {
+                    writeBinaryChangeLog(changelogFile);
+                    binary = true;
+                } catch (IOException e) {
+                    // the text changelog is left in place, index it instead
+                    e.printStackTrace(listener.error("Unable to convert the changelog to the binary form"));
+                }
+            }
+            if (!binary) {
+                try {
+                    GitChangeLogIndex.write(changelogFile);
+                } catch (IOException e) {
+                    // the changelog can still be parsed as a whole
+                    e.printStackTrace(listener.error("Unable to index the changelog"));
+                }
+            }
         }
 
         for (GitSCMExtension ext : extensions) {
@@ -1088,6 +1633,39 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         }
     }
 
+    /**
+     * Replaces the text changelog with its {@link BinaryChangeLog} form.
+     * If anything goes wrong, the text changelog is left as it was.
+     */
+    private void writeBinaryChangeLog(File changelogFile) throws IOException {
+        List<GitChangeSet> changeSets;
+        LineIterator lines = FileUtils.lineIterator(changelogFile, "UTF-8");
+        try {
+            changeSets = new GitChangeLogParser(false).parse(lines);
+        } finally {
+            LineIterator.closeQuietly(lines);
+        }
+        File binary = new File(changelogFile.getPath() + ".tmp");
+        File text = new File(changelogFile.getPath() + ".bak");
+        try {
+            BinaryChangeLog.write(binary, changeSets);
+            // move the text changelog aside rather than deleting it, so that it can be restored
+            if (!changelogFile.renameTo(text)) {
+                throw new IOException("Failed to rename " + changelogFile + " to " + text);
+            }
+            if (!binary.renameTo(changelogFile)) {
+                if (!text.renameTo(changelogFile)) {
+                    throw new IOException("Failed to replace " + changelogFile + " with " + binary
+                            + ", the text changelog was left at " + text);
+                }
+                throw new IOException("Failed to replace " + changelogFile + " with " + binary);
+            }
+        } finally {
+            binary.delete();
+        }
+        text.delete();
+    }
+
     public void buildEnvVars(AbstractBuild<?, ?> build, java.util.Map<String, String> env) {
         super.buildEnvVars(build, env);
         Revision rev = fixNull(getBuildData(build)).getLastBuiltRevision();
@@ -1407,6 +1985,19 @@ public class GitSCM extends GitSCMBackwardCompatibility {
         return branches;
     }
 
+    /**
+     * Gets a matcher testing branch names against all of {@link #getBranches()} at once,
+     * reusing the previous one as long as the specs expand to the same names.
+     */
+    public BranchSpecMatcher getBranchSpecMatcher(EnvVars env) {
+        BranchSpecMatcher matcher = branchSpecMatcher;
+        if (matcher == null || !matcher.isFor(getBranches(), env)) {
+            matcher = new BranchSpecMatcher(getBranches(), env);
+            branchSpecMatcher = matcher;
+        }
+        return matcher;
+    }
+
     @Override public String getKey() {
         String name = getScmName();
         if (name != null) {
@@ -1466,24 +2057,83 @@ public class GitSCM extends GitSCMBackwardCompatibility {
      * @return the last recorded build data
      */
     public @CheckForNull BuildData getBuildData(Run build) {
+        if (build == null) {
+            return null;
+        }
+        final Job job = build.getParent();
+        final String cacheKey = getBuildDataCacheKey();
+        BuildDataCache.Entry cached = BuildDataCache.get(job, cacheKey);
+        final int start = build.getNumber();
+
         BuildData buildData = null;
+        int foundNumber = -1;
+        boolean hit = false;
+        // runs still in progress may yet record BuildData, so don't remember lookups that went through them
+        boolean cacheable = true;
         while (build != null) {
-            List<BuildData> buildDataList = build.getActions(BuildData.class);
-            for (BuildData bd : buildDataList) {
-                if (bd != null && isRelevantBuildData(bd)) {
-                    buildData = bd;
+            if (cached != null && cached.covers(build.getNumber())) {
+                // everything from here down to the cached result has been examined before
+                if (cached.foundNumber < 0) {
+                    hit = true;
                     break;
                 }
+                buildData = getRelevantBuildData(job.getBuildByNumber(cached.foundNumber));
+                if (buildData != null) {
+                    foundNumber = cached.foundNumber;
+                    hit = true;
+                    break;
+                }
+                // the run is gone or changed, so look for it again
+                BuildDataCache.invalidate(job);
+                cached = null;
+            }
+            if (build.isBuilding()) {
+                cacheable = false;
             }
+            buildData = getRelevantBuildData(build);
             if (buildData != null) {
+                foundNumber = build.getNumber();
                 break;
             }
             build = build.getPreviousBuild();
         }
 
+        if (hit) {
+            BuildDataCache.recordHit();
+        } else {
+            BuildDataCache.recordMiss();
+        }
+        if (cacheable) {
+            BuildDataCache.put(job, cacheKey, new BuildDataCache.Entry(start, foundNumber));
+        }
+
         return buildData;
     }
 
+    private @CheckForNull BuildData getRelevantBuildData(@CheckForNull Run build) {
+        if (build == null) {
+            return null;
+        }
+        for (BuildData bd : build.getActions(BuildData.class)) {
+            if (bd != null && isRelevantBuildData(bd)) {
+                return bd;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@link #isRelevantBuildData(BuildData)} only depends on the remote URLs, so they identify
+     * the {@link BuildDataCache} entries of this SCM.
+     */
+    private String getBuildDataCacheKey() {
+        StringBuilder b = new StringBuilder();
+        for (UserRemoteConfig c : getUserRemoteConfigs()) {
+            b.append(c.getUrl()).append('\n');
+        }
+        return b.toString();
+    }
+
     /**
      * Given the workspace, gets the working directory, which will be the workspace
      * if no relative target dir is specified. Otherwise, it'll be "workspace/relativeTargetDir".
@@ -1513,37 +2163,33 @@ public class GitSCM extends GitSCMBackwardCompatibility {
      * @return true if any exclusion files are matched, false otherwise.
      */
     private boolean isRevExcluded(GitClient git, Revision r, TaskListener listener, BuildData buildData) throws IOException, InterruptedException {
-        try {
-            List<String> revShow;
-            if (buildData != null && buildData.lastBuild != null) {
-                revShow  = git.showRevision(buildData.lastBuild.revision.getSha1(), r.getSha1());
-            } else {
-                revShow  = git.showRevision(r.getSha1());
-            }
-
-            revShow.add("commit "); // sentinel value
+        ObjectId from = null;
+        if (buildData != null && buildData.lastBuild != null) {
+            from = buildData.lastBuild.revision.getSha1();
+        }
+        return isRevExcluded(git, from, r, listener, buildData);
+    }
 
-            int start=0, idx=0;
-            for (String line : revShow) {
-                if (line.startsWith("commit ") && idx!=0) {
-                    GitChangeSet change = new GitChangeSet(revShow.subList(start,idx), getExtensions().get(AuthorInChangelog.class)!=null);
+    /**
+     * Given a Revision "r", check whether the list of revisions "from..r" are to be entirely excluded given the exclusion rules
+     *
+     * @param from commit whose history is not looked at, or null to only look at "r"
+     */
+    private boolean isRevExcluded(GitClient git, ObjectId from, Revision r, TaskListener listener, BuildData buildData) throws IOException, InterruptedException {
+        try {
+            ChangeSetWalk changes = new ChangeSetWalk(git, from, r.getSha1(), getExtensions().get(AuthorInChangelog.class)!=null, getPruningMatcher());
 
-                    Boolean excludeThisCommit=null;
-                    for (GitSCMExtension ext : extensions) {
-                        excludeThisCommit = ext.isRevExcluded(this, git, change, listener, buildData);
-                        if (excludeThisCommit!=null)
-                            break;
-                    }
-                    if (excludeThisCommit==null || !excludeThisCommit)
-                        return false;    // this sequence of commits have one commit that we want to build
-                    start = idx;
+            for (GitChangeSet change = changes.next(); change != null; change = changes.next()) {
+                Boolean excludeThisCommit=null;
+                for (GitSCMExtension ext : extensions) {
+                    excludeThisCommit = ext.isRevExcluded(this, git, change, listener, buildData);
+                    if (excludeThisCommit!=null)
+                        break;
                 }
-
-                idx++;
+                if (excludeThisCommit==null || !excludeThisCommit)
+                    return false;    // this sequence of commits have one commit that we want to build
             }
 
-            assert start==revShow.size()-1;
-
             // every commit got excluded
             return true;
         } catch (GitException e) {
@@ -1553,6 +2199,26 @@ public class GitSCM extends GitSCMBackwardCompatibility {
     }
 
 
+    /**
+     * Gets the regions of the {@link PathRestriction} to skip uninteresting directories with when listing the files
+     * a commit changed, or null if all the files have to be listed. Only {@link PathRestriction} tells apart the
+     * paths it is not interested in, so other extensions must not be looking at paths.
+     */
+    private PathRegionMatcher getPruningMatcher() {
+        PathRestriction pathRestriction = getExtensions().get(PathRestriction.class);
+        if (pathRestriction == null || !pathRestriction.getMatcher().canPrune()) {
+            return null;
+        }
+        for (GitSCMExtension ext : extensions) {
+            if (!(ext instanceof PathRestriction || ext instanceof UserExclusion || ext instanceof MessageExclusion)
+                    && Util.isOverridden(GitSCMExtension.class, ext.getClass(), "isRevExcluded",
+                            GitSCM.class, GitClient.class, GitChangeSet.class, TaskListener.class, BuildData.class)) {
+                return null;
+            }
+        }
+        return pathRestriction.getMatcher();
+    }
+
     @Initializer(after=PLUGINS_STARTED)
     public static void onLoaded() {
         DescriptorImpl desc = Jenkins.getInstance().getDescriptorByType(DescriptorImpl.class);
@@ -1586,4 +2252,15 @@ public class GitSCM extends GitSCMBackwardCompatibility {
      * To avoid pointlessly large changelog, we'll limit the number of changes up to this.
      */
     public static final int MAX_CHANGELOG = Integer.getInteger(GitSCM.class.getName()+".maxChangelog",1024);
+
+    /**
+     * Set to true to record changelogs in the compact {@link BinaryChangeLog} form rather than as text.
+     * Either form can be read back.
+     */
+    public static final boolean BINARY_CHANGELOG = Boolean.getBoolean(GitSCM.class.getName() + ".binaryChangelog");
+
+    /**
+     * Maximum number of fetches {@link ParallelFetch} runs at the same time on a node.
+     */
+    public static final int FETCH_CONCURRENCY = Math.max(1, Integer.getInteger(GitSCM.class.getName() + ".fetchConcurrency", 4));
 }
@@ -1,6 +1,7 @@
 package hudson.plugins.git;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.ExtensionPoint;
 import hudson.Util;
@@ -22,8 +23,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
+import static javax.servlet.http.HttpServletResponse.SC_ACCEPTED;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 import jenkins.model.Jenkins;
 import jenkins.triggers.SCMTriggerItem;
 import org.acegisecurity.context.SecurityContext;
@@ -40,6 +43,19 @@ import org.kohsuke.stapler.*;
  */
 @Extension
 public class GitStatus extends AbstractModelObject implements UnprotectedRootAction {
+    /**
+     * Where notifications are queued to be processed asynchronously, or null to process them right away.
+     */
+    private final transient NotifyCommitQueue queue;
+
+    public GitStatus() {
+        this(NotifyCommitQueue.ENABLED ? NotifyCommitQueue.getDefault() : null);
+    }
+
+    /*package*/ GitStatus(NotifyCommitQueue queue) {
+        this.queue = queue;
+    }
+
     public String getDisplayName() {
         return "Git";
     }
@@ -75,11 +91,23 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
             branchesArray = branches.split(",");
         }
 
-        final List<ResponseContributor> contributors = new ArrayList<ResponseContributor>();
-        for (Listener listener : Jenkins.getInstance().getExtensionList(Listener.class)) {
-            contributors.addAll(listener.onNotifyCommit(uri, sha1, branchesArray));
+        if (queue != null) {
+            // answer right away, the listeners will be notified by NotifyCommitQueue
+            final boolean accepted = queue.submit(uri, sha1, branchesArray);
+            return new HttpResponse() {
+                public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node)
+                        throws IOException, ServletException {
+                    rsp.setStatus(accepted ? SC_ACCEPTED : SC_SERVICE_UNAVAILABLE);
+                    rsp.setContentType("text/plain");
+                    rsp.getWriter().println(accepted
+                            ? "Scheduled processing of the notification for repository: " + uri
+                            : "Too many pending notifications, try again later");
+                }
+            };
         }
 
+        final List<ResponseContributor> contributors = notifyListeners(uri, sha1, branchesArray);
+
         return new HttpResponse() {
             public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node)
                     throws IOException, ServletException {
@@ -96,6 +124,20 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
         };
     }
 
+    /**
+     * Hands a notification to all the {@link Listener}s.
+     */
+    /*package*/ static List<ResponseContributor> notifyListeners(URIish uri, String sha1, String[] branches) {
+        // make sure the polling we are about to trigger sees the new commits
+        RemoteRefSnapshotService.invalidate(uri);
+
+        List<ResponseContributor> contributors = new ArrayList<ResponseContributor>();
+        for (Listener listener : Jenkins.getInstance().getExtensionList(Listener.class)) {
+            contributors.addAll(listener.onNotifyCommit(uri, sha1, branches));
+        }
+        return contributors;
+    }
+
     /**
      * Used to test if what we have in the job configuration matches what was submitted to the notification endpoint.
      * It is better to match loosely and wastes a few polling calls than to be pedantic and miss the push notification,
@@ -106,6 +148,13 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
             && StringUtils.equals(normalizePath(lhs.getPath()), normalizePath(rhs.getPath()));
     }
 
+    /**
+     * Returns a key that is the same for all URIs that {@link #looselyMatches(URIish, URIish)} each other.
+     */
+    /*package*/ static String looseKey(URIish uri) {
+        return StringUtils.defaultString(uri.getHost()) + '/' + normalizePath(uri.getPath());
+    }
+
     private static String normalizePath(String path) {
         if (path.startsWith("/"))   path=path.substring(1);
         if (path.endsWith("/"))     path=path.substring(0,path.length()-1);
@@ -197,9 +246,10 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
             SecurityContext old = ACL.impersonate(ACL.SYSTEM);
             try {
 
-                boolean scmFound = false,
+                List<Item> candidates = RemoteRepositoryIndex.getCandidates(uri);
+                boolean scmFound = RemoteRepositoryIndex.hasGitSCMs(),
                         urlFound = false;
-                for (final Item project : Jenkins.getInstance().getAllItems()) {
+                for (final Item project : candidates) {
                     SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(project);
                     if (scmTriggerItem == null) {
                         continue;
@@ -235,12 +285,11 @@ public class GitStatus extends AbstractModelObject implements UnprotectedRootAct
                             if (branches.length == 0) {
                                 branchFound = true;
                             } else {
-                                OUT: for (BranchSpec branchSpec : git.getBranches()) {
-                                    for (String branch : branches) {
-                                        if (branchSpec.matches(repository.getName() + "/" + branch)) {
-                                            branchFound = true;
-                                            break OUT;
-                                        }
+                                BranchSpecMatcher matcher = git.getBranchSpecMatcher(new EnvVars());
+                                for (String branch : branches) {
+                                    if (matcher.matches(repository.getName() + "/" + branch)) {
+                                        branchFound = true;
+                                        break;
                                     }
                                 }
                             }
@@ -0,0 +1,372 @@
+package hudson.plugins.git;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.git.extensions.impl.MirrorCache;
+import hudson.remoting.VirtualChannel;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A repository on a node that mirrors a remote repository, and whose objects the workspaces of
+ * the jobs using {@link MirrorCache} borrow instead of each having a copy.
+ *
+ * <p>
+ * Mirrors live in the "caches" directory of the node and are named after a digest of the remote URL,
+ * like the caches of {@link jenkins.plugins.git.AbstractGitSCMSource}. A mirror is a bare repository,
+ * whose git directory is the ".git" directory of the entry, so that the alternates of the workspaces
+ * need not know whether a mirror was created bare. Each one is fetched into by one build at a time,
+ * and never garbage collects, as workspaces may need any object it ever had.
+ *
+ * <p>
+ * A mirror knows the workspaces that borrow its objects. Once the node has more than {@link #MAX_ENTRIES} mirrors,
+ * or their packs take more than {@link #MAX_SIZE} megabytes, the least recently used mirrors are deleted,
+ * after the workspaces still borrowing from them got a copy of the objects they need with {@code git repack -a -d}.
+ */
+/*package*/ final class NodeMirror {
+
+    /**
+     * Maximum number of mirrors kept on a node.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(NodeMirror.class.getName() + ".maxEntries", 32);
+
+    /**
+     * Maximum size in megabytes of the packs of all the mirrors of a node, or 0 for no limit.
+     */
+    static final long MAX_SIZE = Long.getLong(NodeMirror.class.getName() + ".maxSize", 0);
+
+    private static final String PREFIX = "git-mirror-";
+
+    /**
+     * Lists the git directories of the workspaces borrowing objects from the mirror, in its git directory.
+     * Mirrors created before they were bare kept it in the directory of the entry.
+     */
+    private static final String DEPENDENTS = "dependents";
+
+    /**
+     * Keep one lock per mirror. Lazy populated, but never purge, except on restart.
+     */
+    private static final ConcurrentMap<String, Lock> locks = new ConcurrentHashMap<String, Lock>();
+
+    private final Node node;
+    private final FilePath caches;
+    private final String entry;
+
+    private NodeMirror(Node node, FilePath caches, String entry) {
+        this.node = node;
+        this.caches = caches;
+        this.entry = entry;
+    }
+
+    /**
+     * Gets the mirror of a remote repository on a node.
+     *
+     * @return
+     *      null if the node is offline.
+     */
+    static NodeMirror of(Node node, String url) {
+        FilePath root = node.getRootPath();
+        if (root == null) {
+            return null;
+        }
+        return new NodeMirror(node, root.child("caches"), PREFIX + Util.getDigestOf(url));
+    }
+
+    /**
+     * Gets the name of the mirror, the same on every node for a given remote URL.
+     */
+    String getEntry() {
+        return entry;
+    }
+
+    /**
+     * Gets the directory of the mirror, creating it if needed.
+     */
+    FilePath getDir() throws IOException, InterruptedException {
+        FilePath dir = caches.child(entry);
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Gets the git directory of the mirror.
+     */
+    FilePath getGitDir() throws IOException, InterruptedException {
+        return getDir().child(".git");
+    }
+
+    /**
+     * Gets the lock to hold while fetching into the mirror.
+     */
+    Lock getLock() {
+        return getLock(entry);
+    }
+
+    private Lock getLock(String entry) {
+        String key = node.getNodeName() + '/' + entry;
+        Lock lock;
+        while (null == (lock = locks.get(key))) {
+            locks.putIfAbsent(key, new ReentrantLock());
+        }
+        return lock;
+    }
+
+    /**
+     * Callback to run on a mirror before fetching into it, so that it is bare and never loses objects workspaces borrow.
+     */
+    static RepositoryCallback<Void> configure() {
+        return new Configure();
+    }
+
+    /**
+     * Makes a workspace borrow the objects of the mirror, if it does not already, and records it as a dependent.
+     * To be called while holding the {@linkplain #getLock() lock} of the mirror.
+     *
+     * @param workTree
+     *      working tree of the workspace repository.
+     * @return
+     *      false if the workspace repository has no git directory of its own, and cannot borrow objects.
+     */
+    boolean lend(FilePath workTree) throws IOException, InterruptedException {
+        FilePath gitDir = workTree.child(".git");
+        if (!gitDir.isDirectory()) {
+            return false;
+        }
+        String objects = getGitDir().child("objects").getRemote();
+        FilePath alternates = gitDir.child("objects").child("info").child("alternates");
+        String borrowed = alternates.exists() ? alternates.readToString() : "";
+        if (!lines(borrowed).contains(objects)) {
+            alternates.getParent().mkdirs();
+            alternates.write(borrowed + (borrowed.length() == 0 || borrowed.endsWith("\n") ? "" : "\n") + objects + "\n", null);
+        }
+
+        FilePath dependents = getGitDir().child(DEPENDENTS);
+        String known = dependents.exists() ? dependents.readToString() : "";
+        FilePath legacy = getDir().child(DEPENDENTS);
+        if (legacy.exists()) {
+            for (String dependent : lines(legacy.readToString())) {
+                if (!lines(known).contains(dependent)) {
+                    known += dependent + "\n";
+                }
+            }
+        }
+        if (!lines(known).contains(gitDir.getRemote())) {
+            known += gitDir.getRemote() + "\n";
+        }
+        dependents.write(known, null);
+        legacy.delete();
+        getDir().touch(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Deletes the least recently used mirrors of the node until it is within the limits, sparing this one
+     * and the mirrors being fetched into. The workspaces borrowing objects from a mirror first copy them,
+     * and the mirror is spared if one of them fails to, in which case the node may stay over the limits.
+     *
+     * @param gitExe
+     *      the git executable repacking the workspaces.
+     */
+    void evict(String gitExe, TaskListener listener) throws IOException, InterruptedException {
+        evict(gitExe, listener, MAX_ENTRIES, MAX_SIZE);
+    }
+
+    /*package*/ void evict(String gitExe, TaskListener listener, int maxEntries, long maxSize) throws IOException, InterruptedException {
+        List<Usage> usages = caches.act(new GetUsages());
+        long size = 0;
+        for (Usage usage : usages) {
+            size += usage.size;
+        }
+        Collections.sort(usages, new Comparator<Usage>() {
+            public int compare(Usage u1, Usage u2) {
+                return u1.lastUsed < u2.lastUsed ? -1 : u1.lastUsed > u2.lastUsed ? 1 : 0;
+            }
+        });
+
+        int count = usages.size();
+        for (Usage usage : usages) {
+            if (count <= maxEntries && (maxSize <= 0 || size <= maxSize * 1024 * 1024)) {
+                return;
+            }
+            if (usage.name.equals(entry)) {
+                continue;
+            }
+            Lock lock = getLock(usage.name);
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                listener.getLogger().println("Deleting the least recently used mirror " + usage.name);
+                if (caches.child(usage.name).act(new Delete(gitExe, listener))) {
+                    count--;
+                    size -= usage.size;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (count > maxEntries || (maxSize > 0 && size > maxSize * 1024 * 1024)) {
+            listener.getLogger().println("WARNING: the " + count + " mirrors of this node take " + size / (1024 * 1024)
+                    + " MB, which is over the limits, as the others are in use or still borrowed from");
+        }
+    }
+
+    private static List<String> lines(String text) {
+        List<String> lines = new ArrayList<String>();
+        for (String line : text.split("\n")) {
+            if (line.trim().length() > 0) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    private static final class Configure implements RepositoryCallback<Void> {
+        public Void invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+            StoredConfig config = repository.getConfig();
+            // without a working tree, nothing the workspaces do, such as cleaning it, can touch the mirror
+            config.setBoolean("core", null, "bare", true);
+            config.setInt("gc", null, "auto", 0);
+            config.setInt("gc", null, "autoPackLimit", 0);
+            config.save();
+            return null;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * What eviction needs to know about a mirror.
+     */
+    private static final class Usage implements Serializable {
+        final String name;
+        final long lastUsed;
+        /**
+         * Size of the packs, in bytes.
+         */
+        final long size;
+
+        Usage(String name, long lastUsed, long size) {
+            this.name = name;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Describes the mirrors in the "caches" directory of a node.
+     */
+    private static final class GetUsages implements FilePath.FileCallable<List<Usage>> {
+        public List<Usage> invoke(File caches, VirtualChannel channel) throws IOException, InterruptedException {
+            List<Usage> usages = new ArrayList<Usage>();
+            File[] dirs = caches.listFiles();
+            if (dirs == null) {
+                return usages;
+            }
+            for (File dir : dirs) {
+                if (!dir.isDirectory() || !dir.getName().startsWith(PREFIX)) {
+                    continue;
+                }
+                File packs = new File(dir, ".git/objects/pack");
+                long size = packs.isDirectory() ? FileUtils.sizeOfDirectory(packs) : 0;
+                usages.add(new Usage(dir.getName(), dir.lastModified(), size));
+            }
+            return usages;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Deletes a mirror, once the workspaces borrowing from it have a copy of its objects.
+     * To be called while holding the lock of the mirror, so that no workspace starts borrowing from it meanwhile.
+     */
+    private static final class Delete implements FilePath.FileCallable<Boolean> {
+        private final String gitExe;
+        private final TaskListener listener;
+
+        Delete(String gitExe, TaskListener listener) {
+            this.gitExe = gitExe;
+            this.listener = listener;
+        }
+
+        public Boolean invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+            String objects = new File(dir, ".git/objects").getPath();
+            // the dependents of mirrors created before they were bare are listed outside of their git directory
+            for (File dependents : new File[] {new File(dir, ".git/" + DEPENDENTS), new File(dir, DEPENDENTS)}) {
+                if (!dependents.exists()) {
+                    continue;
+                }
+                for (String gitDir : lines(FileUtils.readFileToString(dependents))) {
+                    File alternates = new File(gitDir, "objects/info/alternates");
+                    if (!alternates.exists()) {
+                        continue;
+                    }
+                    List<String> borrowed = lines(FileUtils.readFileToString(alternates));
+                    boolean borrowing = false;
+                    for (Iterator<String> i = borrowed.iterator(); i.hasNext();) {
+                        String path = i.next();
+                        if (path.equals(objects) || path.startsWith(dir.getPath() + File.separator)) {
+                            i.remove();
+                            borrowing = true;
+                        }
+                    }
+                    if (!borrowing) {
+                        continue;
+                    }
+                    if (!repack(new File(gitDir))) {
+                        listener.getLogger().println("WARNING: could not copy the objects " + gitDir + " borrows from "
+                                + dir.getName() + ", keeping the mirror");
+                        return false;
+                    }
+                    if (borrowed.isEmpty()) {
+                        alternates.delete();
+                    } else {
+                        FileUtils.writeLines(alternates, borrowed);
+                    }
+                }
+            }
+            Util.deleteRecursive(dir);
+            return true;
+        }
+
+        /**
+         * Copies into a repository the objects it borrows, the way {@code git clone --dissociate} does.
+         */
+        private boolean repack(File gitDir) throws InterruptedException {
+            listener.getLogger().println("Copying the objects " + gitDir + " borrows");
+            try {
+                Process repack = new ProcessBuilder(gitExe, "repack", "-a", "-d", "-q")
+                        .directory(gitDir).redirectErrorStream(true).start();
+                repack.getOutputStream().close();
+                IOUtils.copy(repack.getInputStream(), listener.getLogger());
+                return repack.waitFor() == 0;
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to run " + gitExe + " repack"));
+                return false;
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,202 @@
+package hudson.plugins.git;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.transport.URIish;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Processes {@link GitStatus#doNotifyCommit(String, String, String)} notifications
+ * outside of the HTTP request thread, when {@link #ENABLED}.
+ *
+ * <p>
+ * Notifications wait {@link #DEBOUNCE_MILLIS} before being processed by one of {@link #WORKERS} threads,
+ * and any notification for the same repository and branches arriving in the meantime is folded into the
+ * pending one, which then notifies the latest commit. At most {@link #CAPACITY} notifications wait at any time;
+ * further ones are refused, so that a burst of pushes cannot pile up without bounds.
+ */
+public final class NotifyCommitQueue {
+
+    /**
+     * Whether notifications are processed asynchronously. By default they are processed before answering the request.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(NotifyCommitQueue.class.getName() + ".enabled");
+    /**
+     * Maximum number of pending notifications.
+     */
+    public static final int CAPACITY = Integer.getInteger(NotifyCommitQueue.class.getName() + ".capacity", 1000);
+    /**
+     * How long, in milliseconds, a notification waits for others to the same branches before being processed.
+     */
+    public static final int DEBOUNCE_MILLIS = Integer.getInteger(NotifyCommitQueue.class.getName() + ".debounceMillis", 1000);
+    /**
+     * Number of threads processing notifications.
+     */
+    public static final int WORKERS = Integer.getInteger(NotifyCommitQueue.class.getName() + ".workers", 2);
+
+    private static final NotifyCommitQueue DEFAULT = new NotifyCommitQueue(CAPACITY, DEBOUNCE_MILLIS);
+
+    private static final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(Math.max(1, WORKERS),
+            new NamingThreadFactory(new DaemonThreadFactory(), NotifyCommitQueue.class.getSimpleName()));
+
+    private final int capacity;
+    private final int debounceMillis;
+
+    private final ConcurrentMap<String, Notification> pending = new ConcurrentHashMap<String, Notification>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /*package*/ NotifyCommitQueue(int capacity, int debounceMillis) {
+        this.capacity = capacity;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Gets the queue {@link GitStatus} submits notifications to, configured by {@link #CAPACITY} and {@link #DEBOUNCE_MILLIS}.
+     */
+    public static NotifyCommitQueue getDefault() {
+        return DEFAULT;
+    }
+
+    private final class Notification implements Runnable {
+        final String key;
+        final URIish uri;
+        final String[] branches;
+        final long received = System.currentTimeMillis();
+        /**
+         * Commit of the latest notification folded into this one. Guarded by {@link #pending}.
+         */
+        String sha1;
+
+        Notification(String key, URIish uri, String sha1, String[] branches) {
+            this.key = key;
+            this.uri = uri;
+            this.sha1 = sha1;
+            this.branches = branches;
+        }
+
+        public void run() {
+            String sha1;
+            synchronized (pending) {
+                // from now on, a new notification has to be processed again
+                pending.remove(key, this);
+                sha1 = this.sha1;
+            }
+            try {
+                GitStatus.notifyListeners(uri, sha1, branches);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to process the notification of a commit to " + uri, e);
+            } finally {
+                recordLatency(System.currentTimeMillis() - received);
+            }
+        }
+    }
+
+    /**
+     * Queues a notification, or folds it into the pending one for the same repository and branches.
+     *
+     * @return
+     *      false if the queue is full and the notification was dropped.
+     */
+    public boolean submit(URIish uri, String sha1, String[] branches) {
+        received.incrementAndGet();
+        String[] sorted = branches.clone();
+        Arrays.sort(sorted);
+        String key = GitStatus.looseKey(uri) + '\n' + StringUtils.join(sorted, ',');
+
+        Notification notification;
+        synchronized (pending) {
+            Notification existing = pending.get(key);
+            if (existing != null) {
+                existing.sha1 = sha1;
+                coalesced.incrementAndGet();
+                return true;
+            }
+            if (pending.size() >= capacity) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            notification = new Notification(key, uri, sha1, branches);
+            pending.put(key, notification);
+        }
+        executor.schedule(notification, debounceMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private void recordLatency(long latency) {
+        processed.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max;
+        while ((max = maxLatency.get()) < latency && !maxLatency.compareAndSet(max, latency)) {
+            // retry
+        }
+    }
+
+    /**
+     * Number of notifications waiting to be processed.
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Number of notifications received since startup.
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Number of notifications folded into a pending one for the same repository and branches.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Number of notifications dropped because the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of notifications processed.
+     */
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    /**
+     * Average time, in milliseconds, between receiving a notification and having processed it, debounce window included.
+     */
+    public long getAverageLatency() {
+        long count = processed.get();
+        return count == 0 ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * Longest time, in milliseconds, between receiving a notification and having processed it.
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(NotifyCommitQueue.class.getName());
+}
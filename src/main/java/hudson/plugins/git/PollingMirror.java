@@ -0,0 +1,174 @@
+package hudson.plugins.git;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.plugins.git.extensions.impl.MirrorPoll;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.RepositoryCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locates the repositories {@link GitSCM} keeps on the controller to look at the commits of remote repositories
+ * when polling without a workspace, which the jobs using {@link MirrorPoll} do to decide whether new commits
+ * are all excluded.
+ *
+ * <p>
+ * Like the caches of {@link jenkins.plugins.git.AbstractGitSCMSource}, these live in the "caches" directory
+ * and are named after a digest of the remote URLs, so that jobs polling the same repositories share them.
+ * They are bare, only ever receive fetches, and are used by one poll at a time.
+ * Once there are more than {@link #MAX_ENTRIES} of them, or they take more than {@link #MAX_SIZE} megabytes,
+ * the least recently used ones are deleted.
+ */
+/*package*/ final class PollingMirror {
+
+    /**
+     * Maximum number of polling mirrors kept on the controller.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(PollingMirror.class.getName() + ".maxEntries", 32);
+
+    /**
+     * Maximum size in megabytes of the git directories of all the polling mirrors, or 0 for no limit.
+     */
+    static final long MAX_SIZE = Long.getLong(PollingMirror.class.getName() + ".maxSize", 0);
+
+    private static final String PREFIX = "git-polling-";
+
+    /**
+     * Keep one lock per mirror. Lazy populated, but never purge, except on restart.
+     */
+    private static final ConcurrentMap<String, Lock> locks = new ConcurrentHashMap<String, Lock>();
+
+    private PollingMirror() {
+    }
+
+    /**
+     * Gets the name of the mirror of some remote repositories.
+     */
+    static String getEntry(List<RemoteConfig> repositories) {
+        StringBuilder urls = new StringBuilder();
+        for (RemoteConfig repository : repositories) {
+            for (URIish url : repository.getURIs()) {
+                urls.append(url.toPrivateASCIIString()).append('\n');
+            }
+        }
+        return PREFIX + Util.getDigestOf(urls.toString());
+    }
+
+    static File getDir(String entry) {
+        File dir = new File(getCaches(), entry);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static File getCaches() {
+        return new File(Jenkins.getInstance().getRootDir(), "caches");
+    }
+
+    static Lock getLock(String entry) {
+        Lock lock;
+        while (null == (lock = locks.get(entry))) {
+            locks.putIfAbsent(entry, new ReentrantLock());
+        }
+        return lock;
+    }
+
+    /**
+     * Callback to run on a mirror before fetching into it, so that it has no working tree.
+     */
+    static RepositoryCallback<Void> configure() {
+        return new Configure();
+    }
+
+    /**
+     * Records that a mirror was just used, so that it is evicted last.
+     */
+    static void touch(String entry) {
+        getDir(entry).setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Deletes the least recently used mirrors until they are within the limits, sparing the ones in use.
+     */
+    static void evict(String entry, TaskListener listener) {
+        evict(entry, listener, MAX_ENTRIES, MAX_SIZE);
+    }
+
+    /*package*/ static void evict(String entry, TaskListener listener, int maxEntries, long maxSize) {
+        File[] dirs = getCaches().listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<File> mirrors = new ArrayList<File>();
+        long size = 0;
+        for (File dir : dirs) {
+            if (dir.isDirectory() && dir.getName().startsWith(PREFIX)) {
+                mirrors.add(dir);
+                if (maxSize > 0) {
+                    size += FileUtils.sizeOfDirectory(dir);
+                }
+            }
+        }
+        if (mirrors.size() <= maxEntries && (maxSize <= 0 || size <= maxSize * 1024 * 1024)) {
+            return;
+        }
+        Collections.sort(mirrors, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long t1 = f1.lastModified(), t2 = f2.lastModified();
+                return t1 < t2 ? -1 : t1 > t2 ? 1 : 0;
+            }
+        });
+
+        int count = mirrors.size();
+        for (File dir : mirrors) {
+            if (count <= maxEntries && (maxSize <= 0 || size <= maxSize * 1024 * 1024)) {
+                return;
+            }
+            if (dir.getName().equals(entry)) {
+                continue;
+            }
+            Lock lock = getLock(dir.getName());
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                long dirSize = maxSize > 0 ? FileUtils.sizeOfDirectory(dir) : 0;
+                listener.getLogger().println("[poll] Deleting the least recently used polling mirror " + dir.getName());
+                Util.deleteRecursive(dir);
+                count--;
+                size -= dirSize;
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to delete the polling mirror " + dir.getName()));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Configure implements RepositoryCallback<Void> {
+        public Void invoke(Repository repository, VirtualChannel channel) throws IOException, InterruptedException {
+            StoredConfig config = repository.getConfig();
+            // without a working tree, nothing can check out or clean files on the controller
+            config.setBoolean("core", null, "bare", true);
+            config.save();
+            return null;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,40 @@
+package hudson.plugins.git;
+
+import hudson.scm.SCMRevisionState;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remote branches that matched the branch specifiers of a {@link GitSCM} but had not been built
+ * at the time this state was recorded.
+ *
+ * <p>
+ * Used as the baseline of workspace-less polling with wildcard or multiple branch specifiers, so that
+ * a branch whose head the build chooser decided not to build (for example because it is an ancestor
+ * of another branch) does not trigger a build on every poll.
+ */
+public class RemoteBranchesRevisionState extends SCMRevisionState {
+
+    /**
+     * Branch name, such as "origin/master", to the SHA1 of its head.
+     */
+    private final Map<String, ObjectId> unbuiltBranches;
+
+    public RemoteBranchesRevisionState(Map<String, ObjectId> unbuiltBranches) {
+        this.unbuiltBranches = new HashMap<String, ObjectId>(unbuiltBranches);
+    }
+
+    public Map<String, ObjectId> getUnbuiltBranches() {
+        return Collections.unmodifiableMap(unbuiltBranches);
+    }
+
+    /**
+     * Whether the given branch already pointed to the given commit when this state was recorded.
+     */
+    public boolean isKnown(String branch, ObjectId sha1) {
+        return sha1.equals(unbuiltBranches.get(branch));
+    }
+}
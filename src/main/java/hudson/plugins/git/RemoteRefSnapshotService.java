@@ -0,0 +1,143 @@
+package hudson.plugins.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the result of "git ls-remote" on a repository between all the jobs polling it.
+ *
+ * <p>
+ * Workspace-less polling asks the remote repository for its heads. When many jobs poll the same
+ * repository, they all end up asking the server the same question within a few seconds of each other.
+ * This service keeps the heads of a remote repository for {@link #WINDOW_SECONDS} seconds, and lets
+ * concurrent requests for the same repository wait for the one already in flight instead of starting
+ * their own.
+ *
+ * <p>
+ * Repositories are identified by {@link GitStatus#looselyMatches(URIish, URIish)} semantics and by the
+ * credentials used to access them, so a snapshot is only handed to jobs which could have fetched it
+ * themselves. Snapshots of a repository are dropped when {@link GitStatus} is notified of a change in it.
+ */
+public final class RemoteRefSnapshotService {
+
+    /**
+     * How long, in seconds, the heads of a remote repository are reused. 0 only shares requests that are in flight.
+     */
+    public static final int WINDOW_SECONDS = Integer.getInteger(RemoteRefSnapshotService.class.getName() + ".windowSeconds", 10);
+
+    private static final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+
+    private RemoteRefSnapshotService() {
+    }
+
+    private static final class Snapshot extends FutureTask<Map<String, ObjectId>> {
+        private volatile long completed;
+
+        Snapshot(Callable<Map<String, ObjectId>> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void done() {
+            completed = System.currentTimeMillis();
+        }
+
+        boolean isExpired(long now) {
+            return isDone() && now - completed > TimeUnit.SECONDS.toMillis(WINDOW_SECONDS);
+        }
+    }
+
+    /**
+     * Gets the heads of the remote repository, as returned by {@link GitClient#getHeadRev(String)}.
+     *
+     * @param git
+     *      Used to list the remote heads if there is no recent snapshot.
+     *      Must have been set up with the credentials identified by {@code credentialsId}.
+     * @param url
+     *      The remote repository.
+     * @param credentialsId
+     *      The credentials used to access the repository, or null.
+     * @return
+     *      map from ref name (such as "refs/heads/master") to SHA1. Never null.
+     */
+    public static Map<String, ObjectId> getHeads(final GitClient git, final String url, String credentialsId) throws GitException, InterruptedException {
+        String key = key(url, credentialsId);
+        while (true) {
+            Snapshot current = snapshots.get(key);
+            if (current != null && !current.isExpired(System.currentTimeMillis())) {
+                return get(current);
+            }
+
+            Snapshot fresh = new Snapshot(new Callable<Map<String, ObjectId>>() {
+                public Map<String, ObjectId> call() throws Exception {
+                    Map<String, ObjectId> heads = git.getHeadRev(url);
+                    return heads == null ? Collections.<String, ObjectId>emptyMap() : Collections.unmodifiableMap(heads);
+                }
+            });
+            boolean installed = current == null ? snapshots.putIfAbsent(key, fresh) == null : snapshots.replace(key, current, fresh);
+            if (!installed) {
+                continue; // somebody else started a request in the meantime, join it
+            }
+            fresh.run();
+            boolean succeeded = false;
+            try {
+                Map<String, ObjectId> heads = get(fresh);
+                succeeded = true;
+                return heads;
+            } finally {
+                if (!succeeded) {
+                    snapshots.remove(key, fresh); // do not remember failures
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the snapshots of all repositories that loosely match the given one.
+     */
+    public static void invalidate(URIish uri) {
+        String prefix = GitStatus.looseKey(uri) + '\n';
+        for (Iterator<String> i = snapshots.keySet().iterator(); i.hasNext();) {
+            if (i.next().startsWith(prefix)) {
+                i.remove();
+            }
+        }
+    }
+
+    private static Map<String, ObjectId> get(Snapshot snapshot) throws GitException, InterruptedException {
+        try {
+            return snapshot.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GitException) {
+                throw (GitException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new GitException("Failed to list the heads of the remote repository", cause);
+        }
+    }
+
+    private static String key(String url, String credentialsId) {
+        String repository;
+        try {
+            repository = GitStatus.looseKey(new URIish(url));
+        } catch (URISyntaxException e) {
+            repository = url;
+        }
+        return repository + '\n' + (credentialsId == null ? "" : credentialsId);
+    }
+}
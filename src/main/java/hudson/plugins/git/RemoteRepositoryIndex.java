@@ -0,0 +1,287 @@
+package hudson.plugins.git;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Knows which items use a given remote repository, so that {@link GitStatus} does not have to look
+ * at the configuration of every item on each commit notification.
+ *
+ * <p>
+ * Repositories are identified by {@link GitStatus#looselyMatches(URIish, URIish)} semantics. The index
+ * is built on the first lookup, and kept up to date as items are created, saved, renamed and deleted.
+ * Only {@link AbstractProject}s are indexed, since their SCMs are part of their configuration;
+ * other kinds of {@link SCMTriggerItem}s are returned by every lookup.
+ */
+public final class RemoteRepositoryIndex {
+
+    /**
+     * Instance the index was built for, or null if it has to be built on the next lookup.
+     */
+    private static Jenkins indexed;
+
+    private static final Map<String, Set<Item>> itemsByKey = new HashMap<String, Set<Item>>();
+    /**
+     * Items using a {@link GitSCM}, to the keys of its repositories.
+     */
+    private static final Map<Item, Set<String>> keysByItem = new HashMap<Item, Set<String>>();
+    /**
+     * Items that cannot be indexed and must be looked at on every notification.
+     */
+    private static final Set<Item> unindexed = new LinkedHashSet<Item>();
+
+    private RemoteRepositoryIndex() {
+    }
+
+    /**
+     * Gets the items that may use the given repository. Callers still have to check
+     * which of their {@link GitSCM}s and repositories actually match.
+     */
+    public static synchronized List<Item> getCandidates(URIish uri) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (indexed != jenkins) {
+            rebuild(jenkins);
+        }
+
+        List<Item> candidates = new ArrayList<Item>();
+        List<Item> stale = new ArrayList<Item>();
+        Set<Item> items = itemsByKey.get(GitStatus.looseKey(uri));
+        if (items != null) {
+            for (Item item : items) {
+                (isCurrent(jenkins, item) ? candidates : stale).add(item);
+            }
+        }
+        for (Item item : unindexed) {
+            (isCurrent(jenkins, item) ? candidates : stale).add(item);
+        }
+        for (Item item : stale) {
+            unindex(item);
+        }
+        return candidates;
+    }
+
+    /**
+     * Whether any item uses a {@link GitSCM}, be it indexed or one of those looked at on every notification.
+     */
+    public static synchronized boolean hasGitSCMs() {
+        if (indexed != Jenkins.getInstance()) {
+            return false;
+        }
+        if (!keysByItem.isEmpty()) {
+            return true;
+        }
+        for (Item item : unindexed) {
+            SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+            if (scmTriggerItem == null) {
+                continue;
+            }
+            for (SCM scm : scmTriggerItem.getSCMs()) {
+                if (scm instanceof GitSCM) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the index, so that it is built again on the next lookup.
+     */
+    static synchronized void invalidate() {
+        indexed = null;
+        itemsByKey.clear();
+        keysByItem.clear();
+        unindexed.clear();
+    }
+
+    /**
+     * Whether the item has not been deleted or replaced since it was indexed.
+     */
+    private static boolean isCurrent(Jenkins jenkins, Item item) {
+        return jenkins.getItemByFullName(item.getFullName()) == item;
+    }
+
+    private static void rebuild(Jenkins jenkins) {
+        invalidate();
+        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            for (Item item : jenkins.getAllItems()) {
+                index(item);
+            }
+        } finally {
+            SecurityContextHolder.setContext(old);
+        }
+        indexed = jenkins;
+    }
+
+    /**
+     * Indexes the item again, along with the items it contains, whose configuration may derive from it.
+     */
+    private static synchronized void reindex(Item item) {
+        if (indexed == null || indexed != Jenkins.getInstance()) {
+            return; // will be taken care of when the index is built
+        }
+        SecurityContext old = ACL.impersonate(ACL.SYSTEM);
+        try {
+            reindexTree(item);
+        } finally {
+            SecurityContextHolder.setContext(old);
+        }
+    }
+
+    private static void reindexTree(Item item) {
+        index(item);
+        if (item instanceof ItemGroup) {
+            for (Item child : ((ItemGroup<? extends Item>) item).getItems()) {
+                reindexTree(child);
+            }
+        }
+    }
+
+    private static void index(Item item) {
+        unindex(item);
+        SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+        if (scmTriggerItem == null) {
+            return;
+        }
+        if (!(item instanceof AbstractProject)) {
+            unindexed.add(item);
+            return;
+        }
+
+        Set<String> keys = null;
+        for (SCM scm : scmTriggerItem.getSCMs()) {
+            if (!(scm instanceof GitSCM)) {
+                continue;
+            }
+            if (keys == null) {
+                keys = new HashSet<String>();
+            }
+            for (RemoteConfig repository : ((GitSCM) scm).getRepositories()) {
+                for (URIish uri : repository.getURIs()) {
+                    keys.add(GitStatus.looseKey(uri));
+                }
+            }
+        }
+        if (keys == null) {
+            return;
+        }
+
+        keysByItem.put(item, keys);
+        for (String key : keys) {
+            Set<Item> items = itemsByKey.get(key);
+            if (items == null) {
+                items = new LinkedHashSet<Item>();
+                itemsByKey.put(key, items);
+            }
+            items.add(item);
+        }
+    }
+
+    private static void unindex(Item item) {
+        unindexed.remove(item);
+        Set<String> keys = keysByItem.remove(item);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Set<Item> items = itemsByKey.get(key);
+            if (items != null) {
+                items.remove(item);
+                if (items.isEmpty()) {
+                    itemsByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the item along with the items it contained.
+     */
+    private static synchronized void remove(Item item) {
+        String prefix = item.getFullName() + '/';
+        List<Item> removed = new ArrayList<Item>();
+        removed.add(item);
+        for (Item i : keysByItem.keySet()) {
+            if (i.getFullName().startsWith(prefix)) {
+                removed.add(i);
+            }
+        }
+        for (Item i : unindexed) {
+            if (i.getFullName().startsWith(prefix)) {
+                removed.add(i);
+            }
+        }
+        for (Item i : removed) {
+            unindex(i);
+        }
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            invalidate();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            reindex(item);
+        }
+
+        @Override
+        public void onCopied(Item src, Item item) {
+            reindex(item);
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            reindex(item);
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            reindex(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            remove(item);
+        }
+    }
+
+    /**
+     * Items are not always updated through their configuration page, for example when their SCM is set programmatically.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                reindex((Item) o);
+            }
+        }
+    }
+}
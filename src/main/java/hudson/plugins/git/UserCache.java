@@ -0,0 +1,120 @@
+package hudson.plugins.git;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Hudson;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the {@link User} each author or committer of a {@link GitChangeSet} was resolved to,
+ * so that rendering a changelog does not look up, and possibly save, the same users over and over.
+ *
+ * <p>
+ * At most {@link #SIZE} users are remembered, the least recently used ones being forgotten first.
+ * All of them are forgotten whenever a user is saved, as that may change who a person resolves to.
+ * Users are deleted or reloaded without notice, so a remembered user is checked again once it has been
+ * remembered for {@link #MAX_AGE} milliseconds, rather than on each use.
+ */
+/*package*/ final class UserCache {
+
+    /**
+     * Maximum number of remembered users.
+     */
+    static final int SIZE = Integer.getInteger(UserCache.class.getName() + ".size", 1000);
+
+    /**
+     * Milliseconds after which a remembered user is checked to still be there.
+     */
+    static final long MAX_AGE = Long.getLong(UserCache.class.getName() + ".maxAge", 60000);
+
+    /**
+     * Instance the users belong to.
+     */
+    private static Hudson owner;
+
+    private static final Map<String, Entry> users = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > SIZE;
+        }
+    };
+
+    private UserCache() {
+    }
+
+    /**
+     * Gets the user a person was resolved to by {@link GitChangeSet#findOrCreateUser(String, String, boolean)}.
+     *
+     * @return
+     *      null if the person has to be resolved.
+     */
+    static User get(String name, String email, boolean createAccountBasedOnEmail) {
+        String key = key(name, email, createAccountBasedOnEmail);
+        Entry entry;
+        synchronized (users) {
+            if (owner != Hudson.getInstance()) {
+                users.clear();
+                owner = Hudson.getInstance();
+            }
+            entry = users.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.checked > MAX_AGE) {
+            if (User.get(entry.user.getId(), false) != entry.user) {
+                synchronized (users) {
+                    users.remove(key);
+                }
+                return null;
+            }
+            entry.checked = now;
+        }
+        return entry.user;
+    }
+
+    static void put(String name, String email, boolean createAccountBasedOnEmail, User user) {
+        synchronized (users) {
+            if (owner == Hudson.getInstance()) {
+                users.put(key(name, email, createAccountBasedOnEmail), new Entry(user));
+            }
+        }
+    }
+
+    private static String key(String name, String email, boolean createAccountBasedOnEmail) {
+        return name + '\n' + email + '\n' + createAccountBasedOnEmail;
+    }
+
+    private static final class Entry {
+        final User user;
+        /**
+         * When the user was last known to be there.
+         */
+        volatile long checked = System.currentTimeMillis();
+
+        Entry(User user) {
+            this.user = user;
+        }
+    }
+
+    /**
+     * Forgets all the users when one of them is saved, as its e-mail address or id may have changed.
+     */
+    @Extension
+    public static final class UserSaved extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User) {
+                synchronized (users) {
+                    users.clear();
+                }
+            }
+        }
+    }
+}
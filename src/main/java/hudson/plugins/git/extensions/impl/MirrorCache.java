@@ -0,0 +1,26 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.plugins.git.extensions.FakeGitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Keep a mirror of each remote repository on the node, and have the workspace borrow its objects
+ * rather than getting its own copy of them.
+ *
+ * @see CloneOption#getReference()
+ */
+public class MirrorCache extends FakeGitSCMExtension {
+    @DataBoundConstructor
+    public MirrorCache() {
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Share the objects of the remote repositories among the workspaces of the node";
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.plugins.git.extensions.FakeGitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Poll without a workspace even with {@link PathRestriction}, {@link UserExclusion}, {@link MessageExclusion}
+ * or {@link AuthorInChangelog}, by checking the new commits against the exclusions in a mirror on the master.
+ *
+ * @see hudson.plugins.git.GitSCM#requiresWorkspaceForPolling()
+ */
+public class MirrorPoll extends FakeGitSCMExtension {
+    @DataBoundConstructor
+    public MirrorPoll() {
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Check the polling exclusions in a mirror on the master, without a workspace";
+        }
+    }
+}
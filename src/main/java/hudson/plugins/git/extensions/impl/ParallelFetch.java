@@ -0,0 +1,26 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.extensions.FakeGitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Fetch from the remote repositories at the same time rather than one after the other.
+ *
+ * @see GitSCM#FETCH_CONCURRENCY
+ */
+public class ParallelFetch extends FakeGitSCMExtension {
+    @DataBoundConstructor
+    public ParallelFetch() {
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Fetch from the remote repositories in parallel";
+        }
+    }
+}
@@ -8,15 +8,14 @@ import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.extensions.GitSCMExtension;
 import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
 import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.PathRegionMatcher;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * {@link GitSCMExtension} that ignores commits that only affects specific paths.
@@ -30,7 +29,7 @@ public class PathRestriction extends GitSCMExtension {
     private final String excludedRegions;
 
     // compiled cache
-    private transient volatile List<Pattern> includedPatterns,excludedPatterns;
+    private transient volatile PathRegionMatcher matcher;
 
     @Override
     public boolean requiresWorkspaceForPolling() {
@@ -63,30 +62,13 @@ public class PathRestriction extends GitSCMExtension {
         return StringUtils.isBlank(s) ? null : s.split("[\\r\\n]+");
     }
 
-    private List<Pattern> getIncludedPatterns() {
-        if (includedPatterns==null)
-            includedPatterns = getRegionsPatterns(getIncludedRegionsNormalized());
-        return includedPatterns;
-    }
-
-    private List<Pattern> getExcludedPatterns() {
-        if (excludedPatterns==null)
-            excludedPatterns = getRegionsPatterns(getExcludedRegionsNormalized());
-        return excludedPatterns;
-    }
-
-    private List<Pattern> getRegionsPatterns(String[] regions) {
-        if (regions != null) {
-            List<Pattern> patterns = new ArrayList<Pattern>(regions.length);
-
-            for (String region : regions) {
-                patterns.add(Pattern.compile(region));
-            }
-
-            return patterns;
-        }
-
-        return Collections.emptyList();
+    /**
+     * Gets the compiled form of the regions.
+     */
+    public PathRegionMatcher getMatcher() {
+        if (matcher==null)
+            matcher = new PathRegionMatcher(getIncludedRegionsNormalized(), getExcludedRegionsNormalized());
+        return matcher;
     }
 
     @Override
@@ -96,46 +78,24 @@ public class PathRestriction extends GitSCMExtension {
             return null;
         }
 
-        List<Pattern> included = getIncludedPatterns();
-        List<Pattern> excluded = getExcludedPatterns();
-
-        // Assemble the list of included paths
-        List<String> includedPaths = new ArrayList<String>(paths.size());
-        if (!included.isEmpty()) {
-            for (String path : paths) {
-                for (Pattern pattern : included) {
-                    if (pattern.matcher(path).matches()) {
-                        includedPaths.add(path);
-                        break;
-                    }
-                }
-            }
-        } else {
-            includedPaths.addAll(paths);
-        }
+        PathRegionMatcher matcher = getMatcher();
 
-        // Assemble the list of excluded paths
+        // Look for an included path that is not excluded, collecting the excluded ones on the way
         List<String> excludedPaths = new ArrayList<String>();
-        if (!excluded.isEmpty()) {
-            for (String path : includedPaths) {
-                for (Pattern pattern : excluded) {
-                    if (pattern.matcher(path).matches()) {
-                        excludedPaths.add(path);
-                        break;
-                    }
+        for (String path : paths) {
+            if (matcher.isIncluded(path)) {
+                if (!matcher.isExcluded(path)) {
+                    return null;
                 }
+                excludedPaths.add(path);
             }
         }
 
-        // If every affected path is excluded, return true.
-        if (includedPaths.size() == excludedPaths.size()) {
-            listener.getLogger().println("Ignored commit " + commit.getCommitId()
-                    + ": Found only excluded paths: "
-                    + Util.join(excludedPaths, ", "));
-            return true;
-        }
-
-        return null;
+        // Every affected path is excluded
+        listener.getLogger().println("Ignored commit " + commit.getCommitId()
+                + ": Found only excluded paths: "
+                + Util.join(excludedPaths, ", "));
+        return true;
     }
 
     @Extension
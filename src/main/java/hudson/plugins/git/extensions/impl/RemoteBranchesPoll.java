@@ -0,0 +1,29 @@
+package hudson.plugins.git.extensions.impl;
+
+import hudson.Extension;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.RemoteBranchesRevisionState;
+import hudson.plugins.git.extensions.FakeGitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Poll wildcard or multiple branch specifiers by listing the heads of the remote repositories,
+ * without a workspace.
+ *
+ * @see GitSCM#calcRevisionsFromBuild
+ * @see RemoteBranchesRevisionState
+ */
+public class RemoteBranchesPoll extends FakeGitSCMExtension {
+    @DataBoundConstructor
+    public RemoteBranchesPoll() {
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Poll all the matching branches without a workspace";
+        }
+    }
+}
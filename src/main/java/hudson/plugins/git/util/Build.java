@@ -13,6 +13,10 @@ import java.io.Serializable;
 /**
  * Remembers which build built which {@link Revision}.
  *
+ * <p>
+ * Once recorded by {@link BuildData#saveBuild(Build)}, instances are shared between the
+ * {@link BuildData} of successive builds and must not be modified.
+ *
  * @see BuildData#buildsByBranchName
  */
 @ExportedBean(defaultVisibility = 999)
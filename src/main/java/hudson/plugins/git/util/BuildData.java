@@ -1,5 +1,6 @@
 package hudson.plugins.git.util;
 
+import com.google.common.collect.ForwardingMap;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Functions;
 import hudson.model.AbstractBuild;
@@ -35,8 +36,12 @@ public class BuildData implements Action, Serializable, Cloneable {
      * <p>
      * This map contains all the branches we've built in the past (including the build that this {@link BuildData}
      * is attached to) 
+     *
+     * <p>
+     * Changes made to this map other than through {@link #saveBuild(Build)} make {@link #hasBeenBuilt(ObjectId)}
+     * index it again. A map set directly on this field is indexed on each call.
      */
-    public Map<String, Build> buildsByBranchName = new HashMap<String, Build>();
+    public Map<String, Build> buildsByBranchName = new BranchMap(new HashMap<String, Build>(), null);
 
     /**
      * The last build that we did (among the values in {@link #buildsByBranchName}.)
@@ -99,7 +104,7 @@ public class BuildData implements Action, Serializable, Cloneable {
             newBuildsByBranchName.put(branchName, build);
         }
 
-        this.buildsByBranchName = newBuildsByBranchName;
+        this.buildsByBranchName = new BranchMap(newBuildsByBranchName, null);
 
         if(this.remoteUrls == null)
             this.remoteUrls = new HashSet<String>();
@@ -114,29 +119,40 @@ public class BuildData implements Action, Serializable, Cloneable {
      * @return true if sha1 has been built
      */
     public boolean hasBeenBuilt(ObjectId sha1) {
-    	try {
-            for(Build b : buildsByBranchName.values()) {
-                if(b.revision.getSha1().equals(sha1) || b.marked.getSha1().equals(sha1))
-                    return true;
-            }
-
-            return false;
-    	}
-    	catch(Exception ex) {
+        if (sha1 == null)
             return false;
-    	}
+        return getBuiltSha1Index().containsKey(sha1);
     }
 
     public void saveBuild(Build build) {
     	lastBuild = build;
     	for(Branch branch : build.marked.getBranches()) {
-            buildsByBranchName.put(fixNull(branch.getName()), build);
+            putBuild(fixNull(branch.getName()), build);
     	}
         for(Branch branch : build.revision.getBranches()) {
-            buildsByBranchName.put(fixNull(branch.getName()), build);
+            putBuild(fixNull(branch.getName()), build);
+        }
+    }
+
+    private void putBuild(String branchName, Build build) {
+        if (buildsByBranchName instanceof BranchMap) {
+            ((BranchMap) buildsByBranchName).record(branchName, build);
+        } else {
+            buildsByBranchName.put(branchName, build);
         }
     }
 
+    /**
+     * Gets the SHA1 of every {@link Build#revision} and {@link Build#marked} of {@link #buildsByBranchName},
+     * with the number of branch entries that refer to it.
+     */
+    private Map<ObjectId, Integer> getBuiltSha1Index() {
+        if (buildsByBranchName instanceof BranchMap) {
+            return ((BranchMap) buildsByBranchName).getIndex();
+        }
+        return BranchMap.index(buildsByBranchName.values());
+    }
+
     public Build getLastBuildOfBranch(String branch) {
         return buildsByBranchName.get(branch);
     }
@@ -182,6 +198,19 @@ public class BuildData implements Action, Serializable, Cloneable {
         return remoteUrls.contains(remoteUrl);
     }
 
+    /**
+     * Creates a copy of this {@link BuildData} to be updated by the next build.
+     *
+     * <p>
+     * The copy gets its own {@link #buildsByBranchName} map and {@link #remoteUrls} set,
+     * but the {@link Build} records in them are shared with this object rather than deep-copied.
+     * A {@link Build} is never modified once it has been recorded by {@link #saveBuild(Build)}
+     * (a new build always records a new {@link Build}), so sharing is safe and keeps
+     * the per-build cost proportional to the number of branches rather than to the size of
+     * every {@link Revision} and its branch list.
+     * The sharing is in memory only: each {@link BuildData} is still written whole, with all its branches,
+     * to the build it is attached to, so the size of build.xml is unchanged.
+     */
     @Override
     public BuildData clone() {
         BuildData clone;
@@ -192,32 +221,21 @@ public class BuildData implements Action, Serializable, Cloneable {
             throw new RuntimeException("Error cloning BuildData", e);
         }
 
-        IdentityHashMap<Build, Build> clonedBuilds = new IdentityHashMap<Build, Build>();
-
-        clone.buildsByBranchName = new HashMap<String, Build>();
+        Map<String, Build> branches = buildsByBranchName instanceof BranchMap
+                ? ((BranchMap) buildsByBranchName).builds
+                : buildsByBranchName;
+        Map<String, Build> cloneBranches = new HashMap<String, Build>(branches.size());
         clone.remoteUrls = new HashSet<String>();
 
-        for (Map.Entry<String, Build> buildByBranchName : buildsByBranchName.entrySet()) {
-            String branchName = buildByBranchName.getKey();
-            if (branchName == null) {
-                branchName = "";
-            }
-            Build build = buildByBranchName.getValue();
-            Build clonedBuild = clonedBuilds.get(build);
-            if (clonedBuild == null) {
-                clonedBuild = build.clone();
-                clonedBuilds.put(build, clonedBuild);
-            }
-            clone.buildsByBranchName.put(branchName, clonedBuild);
+        for (Map.Entry<String, Build> buildByBranchName : branches.entrySet()) {
+            cloneBranches.put(fixNull(buildByBranchName.getKey()), buildByBranchName.getValue());
         }
 
-        if (lastBuild != null) {
-            clone.lastBuild = clonedBuilds.get(lastBuild);
-            if (clone.lastBuild == null) {
-                clone.lastBuild = lastBuild.clone();
-                clonedBuilds.put(lastBuild, clone.lastBuild);
-            }
-        }
+        // same branches and builds, so the index can be copied rather than recomputed
+        Map<ObjectId, Integer> index = cloneBranches.size() == branches.size()
+                ? new HashMap<ObjectId, Integer>(getBuiltSha1Index())
+                : null;
+        clone.buildsByBranchName = new BranchMap(cloneBranches, index);
 
         for(String remoteUrl : getRemoteUrls())
         {
@@ -227,6 +245,24 @@ public class BuildData implements Action, Serializable, Cloneable {
         return clone;
     }
 
+    /**
+     * Writes {@link #buildsByBranchName} as the plain map it has always been written as.
+     */
+    private Object writeReplace() {
+        if (!(buildsByBranchName instanceof BranchMap)) {
+            return this;
+        }
+        BuildData replacement;
+        try {
+            replacement = (BuildData) super.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Error cloning BuildData", e);
+        }
+        replacement.buildsByBranchName = new HashMap<String, Build>(((BranchMap) buildsByBranchName).builds);
+        return replacement;
+    }
+
     public Api getApi() {
         return new Api(this);
     }
@@ -238,4 +274,137 @@ public class BuildData implements Action, Serializable, Cloneable {
                 ",buildsByBranchName="+buildsByBranchName+
                 ",lastBuild="+lastBuild+"]";
     }
+
+    /**
+     * {@link #buildsByBranchName}, along with the SHA1 index that lets {@link #hasBeenBuilt(ObjectId)} answer
+     * in constant time instead of scanning every branch.
+     * The index is kept up to date by {@link BuildData#saveBuild(Build)}, and dropped by any change made
+     * through the map itself, including through its views, as those can be used to modify it.
+     * Not persisted; rebuilt lazily after unmarshalling.
+     */
+    private static final class BranchMap extends ForwardingMap<String, Build> {
+        final Map<String, Build> builds;
+        /**
+         * SHA1 of every {@link Build#revision} and {@link Build#marked} -> number of branch entries that refer to it,
+         * or null if it has to be rebuilt.
+         */
+        private Map<ObjectId, Integer> index;
+
+        BranchMap(Map<String, Build> builds, Map<ObjectId, Integer> index) {
+            this.builds = builds;
+            this.index = index;
+        }
+
+        @Override
+        protected Map<String, Build> delegate() {
+            return builds;
+        }
+
+        @Override
+        public Build put(String key, Build value) {
+            index = null;
+            return builds.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends Build> map) {
+            index = null;
+            builds.putAll(map);
+        }
+
+        @Override
+        public Build remove(Object key) {
+            index = null;
+            return builds.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            index = null;
+            builds.clear();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            index = null;
+            return builds.keySet();
+        }
+
+        @Override
+        public Collection<Build> values() {
+            index = null;
+            return builds.values();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Build>> entrySet() {
+            index = null;
+            return builds.entrySet();
+        }
+
+        Map<ObjectId, Integer> getIndex() {
+            Map<ObjectId, Integer> i = index;
+            if (i == null) {
+                i = index(builds.values());
+                index = i;
+            }
+            return i;
+        }
+
+        /**
+         * Records the build of a branch, updating the index rather than dropping it.
+         */
+        void record(String branchName, Build build) {
+            Map<ObjectId, Integer> i = getIndex();
+            Build previous = builds.put(branchName, build);
+            if (previous != null) {
+                unindex(i, previous);
+            }
+            index(i, build);
+        }
+
+        static Map<ObjectId, Integer> index(Collection<Build> builds) {
+            Map<ObjectId, Integer> index = new HashMap<ObjectId, Integer>();
+            for (Build b : builds) {
+                index(index, b);
+            }
+            return index;
+        }
+
+        private static void index(Map<ObjectId, Integer> index, Build build) {
+            if (build != null) {
+                increment(index, sha1Of(build.revision));
+                increment(index, sha1Of(build.marked));
+            }
+        }
+
+        private static void unindex(Map<ObjectId, Integer> index, Build build) {
+            decrement(index, sha1Of(build.revision));
+            decrement(index, sha1Of(build.marked));
+        }
+
+        private static ObjectId sha1Of(Revision r) {
+            if (r == null || r.getSha1() == null)
+                return null;
+            // copy() turns subclasses such as RevCommit into a plain 20-byte ObjectId
+            return r.getSha1().copy();
+        }
+
+        private static void increment(Map<ObjectId, Integer> index, ObjectId sha1) {
+            if (sha1 == null)
+                return;
+            Integer count = index.get(sha1);
+            index.put(sha1, count == null ? 1 : count + 1);
+        }
+
+        private static void decrement(Map<ObjectId, Integer> index, ObjectId sha1) {
+            if (sha1 == null)
+                return;
+            Integer count = index.get(sha1);
+            if (count == null || count <= 1)
+                index.remove(sha1);
+            else
+                index.put(sha1, count - 1);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.Revision;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the commit time of the revisions the build choosers sort, so that each commit is only parsed once.
+ *
+ * <p>
+ * The times are kept in a file of the git directory, {@value #FILE_NAME}, which is read the first time the repository
+ * is looked at, and written whenever new times were found out. Once it holds more than {@link #MAX_ENTRIES} times,
+ * only the times of the revisions being sorted are kept.
+ */
+/*package*/ final class CommitTimeCache {
+
+    static final String FILE_NAME = "jenkins-commit-times";
+
+    /**
+     * Maximum number of times remembered for a repository.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(CommitTimeCache.class.getName() + ".maxEntries", 100000);
+
+    /**
+     * Maximum number of repositories whose times are kept in memory.
+     */
+    static final int CACHE_SIZE = Integer.getInteger(CommitTimeCache.class.getName() + ".cacheSize", 16);
+
+    private static final int VERSION = 1;
+
+    private static final Map<File, CommitTimeCache> caches = new LinkedHashMap<File, CommitTimeCache>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, CommitTimeCache> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final File file;
+    private ObjectIdSubclassMap<Entry> times;
+
+    private CommitTimeCache(File file) {
+        this.file = file;
+    }
+
+    static CommitTimeCache of(Repository repository) {
+        synchronized (caches) {
+            CommitTimeCache cache = caches.get(repository.getDirectory());
+            if (cache == null) {
+                cache = new CommitTimeCache(new File(repository.getDirectory(), FILE_NAME));
+                caches.put(repository.getDirectory(), cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Sorts revisions by the time of their commit, old to new. Revisions of the same time keep their order.
+     *
+     * @throws org.eclipse.jgit.errors.MissingObjectException
+     *      if the commit of a revision is not in the repository.
+     */
+    static void sort(Repository repository, List<Revision> revisions) throws IOException {
+        int n = revisions.size();
+        if (n <= 1) {
+            return;
+        }
+        int[] times = of(repository).getTimes(repository, revisions);
+
+        // the time in the upper half, the position in the lower half
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) times[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        List<Revision> sorted = new ArrayList<Revision>(n);
+        for (long key : keys) {
+            sorted.add(revisions.get((int) key));
+        }
+        for (int i = 0; i < n; i++) {
+            revisions.set(i, sorted.get(i));
+        }
+    }
+
+    /**
+     * Gets the time of the commit of each revision, in seconds since the epoch.
+     */
+    synchronized int[] getTimes(Repository repository, List<Revision> revisions) throws IOException {
+        if (times == null) {
+            times = load();
+        }
+
+        int[] result = new int[revisions.size()];
+        boolean added = false;
+        RevWalk walk = null;
+        try {
+            for (int i = 0; i < result.length; i++) {
+                ObjectId id = revisions.get(i).getSha1();
+                Entry e = times.get(id);
+                if (e == null) {
+                    if (walk == null) {
+                        walk = new RevWalk(repository);
+                        walk.setRetainBody(false);
+                    }
+                    e = new Entry(id, walk.parseCommit(id).getCommitTime());
+                    times.add(e);
+                    added = true;
+                }
+                result[i] = e.time;
+            }
+        } finally {
+            if (walk != null) {
+                walk.release();
+            }
+        }
+
+        if (added) {
+            if (times.size() > MAX_ENTRIES) {
+                ObjectIdSubclassMap<Entry> kept = new ObjectIdSubclassMap<Entry>();
+                for (Revision r : revisions) {
+                    kept.addIfAbsent(times.get(r.getSha1()));
+                }
+                times = kept;
+            }
+            save();
+        }
+        return result;
+    }
+
+    private ObjectIdSubclassMap<Entry> load() {
+        ObjectIdSubclassMap<Entry> loaded = new ObjectIdSubclassMap<Entry>();
+        if (!file.exists()) {
+            return loaded;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return loaded;
+                }
+                byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+                for (int count = in.readInt(); count > 0; count--) {
+                    in.readFully(raw);
+                    loaded.addIfAbsent(new Entry(ObjectId.fromRaw(raw), in.readInt()));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // the times will be found out again
+            LOGGER.log(Level.FINE, "Failed to read " + file, e);
+        }
+        return loaded;
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(times.size());
+                for (Entry e : times) {
+                    e.copyRawTo(out);
+                    out.writeInt(e.time);
+                }
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to write " + file, e);
+            tmp.delete();
+        }
+    }
+
+    private static final class Entry extends ObjectId {
+        /**
+         * Commit time, in seconds since the epoch.
+         */
+        final int time;
+
+        Entry(AnyObjectId id, int time) {
+            super(id);
+            this.time = time;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(CommitTimeCache.class.getName());
+}
@@ -2,17 +2,24 @@ package hudson.plugins.git.util;
 
 import hudson.Extension;
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.plugins.git.*;
+import hudson.remoting.Channel;
 import hudson.remoting.VirtualChannel;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.*;
 
@@ -70,6 +77,7 @@ public class DefaultBuildChooser extends BuildChooser {
         }
 
         Collection<Revision> revisions = new HashSet<Revision>();
+        List<String> possibleQualifiedBranches = new ArrayList<String>();
 
         // if it doesn't contain '/' then it could be an unqualified branch
         if (!branchSpec.contains("/")) {
@@ -80,12 +88,11 @@ public class DefaultBuildChooser extends BuildChooser {
                 String repository = config.getName();
                 String fqbn = repository + "/" + branchSpec;
                 verbose(listener, "Qualifying {0} as a branch in repository {1} -> {2}", branchSpec, repository, fqbn);
-                revisions.addAll(getHeadRevision(isPollCall, fqbn, git, listener, data));
+                possibleQualifiedBranches.add(fqbn);
             }
         } else {
             // either the branch is qualified (first part should match a valid remote)
             // or it is still unqualified, but the branch name contains a '/'
-            List<String> possibleQualifiedBranches = new ArrayList<String>();
             for (RemoteConfig config : gitSCM.getRepositories()) {
                 String repository = config.getName();
                 String fqbn;
@@ -107,15 +114,21 @@ public class DefaultBuildChooser extends BuildChooser {
                 verbose(listener, "Qualifying {0} as a branch in repository {1} -> {2}", branchSpec, repository, fqbn);
                 possibleQualifiedBranches.add(fqbn);
             }
-            for (String fqbn : possibleQualifiedBranches) {
-              revisions.addAll(getHeadRevision(isPollCall, fqbn, git, listener, data));
-            }
+        }
+
+        // resolve them all at once, along with the spec itself in case none is found
+        List<String> names = new ArrayList<String>(possibleQualifiedBranches);
+        names.add(branchSpec);
+        Map<String, ObjectId> resolved = git.withRepository(new RevParse(names));
+
+        for (String fqbn : possibleQualifiedBranches) {
+          revisions.addAll(getHeadRevision(isPollCall, fqbn, resolved.get(fqbn), listener, data));
         }
 
         if (revisions.isEmpty()) {
             // the 'branch' could actually be a non branch reference (for example a tag or a gerrit change)
 
-            revisions = getHeadRevision(isPollCall, branchSpec, git, listener, data);
+            revisions = getHeadRevision(isPollCall, branchSpec, resolved.get(branchSpec), listener, data);
             if (!revisions.isEmpty()) {
                 verbose(listener, "{0} seems to be a non-branch reference (tag?)");
             }
@@ -124,52 +137,54 @@ public class DefaultBuildChooser extends BuildChooser {
         return revisions;
     }
 
-    private Collection<Revision> getHeadRevision(boolean isPollCall, String singleBranch, GitClient git, TaskListener listener, BuildData data) throws InterruptedException {
-        try {
-            ObjectId sha1 = git.revParse(singleBranch);
-            verbose(listener, "rev-parse {0} -> {1}", singleBranch, sha1);
+    /**
+     * @param sha1
+     *      the commit the branch was resolved to, or null if it does not exist.
+     */
+    private Collection<Revision> getHeadRevision(boolean isPollCall, String singleBranch, ObjectId sha1, TaskListener listener, BuildData data) {
+        if (sha1 == null) {
+            // branch does not exist, there is nothing to build
+            verbose(listener, "Failed to rev-parse: {0}", singleBranch);
+            return emptyList();
+        }
+        verbose(listener, "rev-parse {0} -> {1}", singleBranch, sha1);
 
-            // if polling for changes don't select something that has
-            // already been built as a build candidate
-            if (isPollCall && data.hasBeenBuilt(sha1)) {
-                verbose(listener, "{0} has already been built", sha1);
-                return emptyList();
-            }
+        // if polling for changes don't select something that has
+        // already been built as a build candidate
+        if (isPollCall && data.hasBeenBuilt(sha1)) {
+            verbose(listener, "{0} has already been built", sha1);
+            return emptyList();
+        }
 
-            verbose(listener, "Found a new commit {0} to be built on {1}", sha1, singleBranch);
-            Revision revision = new Revision(sha1);
-            revision.getBranches().add(new Branch(singleBranch, sha1));
-            return Collections.singletonList(revision);
-            /*
-            // calculate the revisions that are new compared to the last build
-            List<Revision> candidateRevs = new ArrayList<Revision>();
-            List<ObjectId> allRevs = git.revListAll(); // index 0 contains the newest revision
-            if (data != null && allRevs != null) {
-                Revision lastBuiltRev = data.getLastBuiltRevision();
-                if (lastBuiltRev == null) {
-                    return Collections.singletonList(objectId2Revision(singleBranch, sha1));
-                }
-                int indexOfLastBuildRev = allRevs.indexOf(lastBuiltRev.getSha1());
-                if (indexOfLastBuildRev == -1) {
-                    // mhmmm ... can happen when branches are switched.
-                    return Collections.singletonList(objectId2Revision(singleBranch, sha1));
-                }
-                List<ObjectId> newRevisionsSinceLastBuild = allRevs.subList(0, indexOfLastBuildRev);
-                // translate list of ObjectIds into list of Revisions
-                for (ObjectId objectId : newRevisionsSinceLastBuild) {
-                    candidateRevs.add(objectId2Revision(singleBranch, objectId));
-                }
+        verbose(listener, "Found a new commit {0} to be built on {1}", sha1, singleBranch);
+        Revision revision = new Revision(sha1);
+        revision.getBranches().add(new Branch(singleBranch, sha1));
+        return Collections.singletonList(revision);
+        /*
+        // calculate the revisions that are new compared to the last build
+        List<Revision> candidateRevs = new ArrayList<Revision>();
+        List<ObjectId> allRevs = git.revListAll(); // index 0 contains the newest revision
+        if (data != null && allRevs != null) {
+            Revision lastBuiltRev = data.getLastBuiltRevision();
+            if (lastBuiltRev == null) {
+                return Collections.singletonList(objectId2Revision(singleBranch, sha1));
             }
-            if (candidateRevs.isEmpty()) {
+            int indexOfLastBuildRev = allRevs.indexOf(lastBuiltRev.getSha1());
+            if (indexOfLastBuildRev == -1) {
+                // mhmmm ... can happen when branches are switched.
                 return Collections.singletonList(objectId2Revision(singleBranch, sha1));
             }
-            return candidateRevs;
-            */
-        } catch (GitException e) {
-            // branch does not exist, there is nothing to build
-            verbose(listener, "Failed to rev-parse: {0}", singleBranch);
-            return emptyList();
+            List<ObjectId> newRevisionsSinceLastBuild = allRevs.subList(0, indexOfLastBuildRev);
+            // translate list of ObjectIds into list of Revisions
+            for (ObjectId objectId : newRevisionsSinceLastBuild) {
+                candidateRevs.add(objectId2Revision(singleBranch, objectId));
+            }
         }
+        if (candidateRevs.isEmpty()) {
+            return Collections.singletonList(objectId2Revision(singleBranch, sha1));
+        }
+        return candidateRevs;
+        */
     }
 
     private Revision objectId2Revision(String singleBranch, ObjectId sha1) {
@@ -187,6 +202,8 @@ public class DefaultBuildChooser extends BuildChooser {
      *     Any Revisions with no interesting branches are dropped.
      *  3. Get rid of any revisions that are wholly subsumed by another
      *     revision we're considering.
+     *     Only the branches that changed since the previous call are looked at in these steps,
+     *     see {@link #getTipRevisions(GitUtils, BranchSpecMatcher, TaskListener)}.
      *  4. Get rid of any revisions that we've already built.
      *  5. Sort revisions from old to new.
      *
@@ -200,70 +217,27 @@ public class DefaultBuildChooser extends BuildChooser {
 
         EnvVars env = context.getEnvironment();
 
-        // 1. Get all the (branch) revisions that exist
-        List<Revision> revs = new ArrayList<Revision>(utils.getAllBranchRevisions());
-        verbose(listener, "Starting with all the branches: {0}", revs);
-
+        // 1. Get all the (branch) revisions that exist, and
         // 2. Filter out any revisions that don't contain any branches that we
-        // actually care about (spec)
-        for (Iterator<Revision> i = revs.iterator(); i.hasNext();) {
-            Revision r = i.next();
-
-            // filter out uninteresting branches
-            for (Iterator<Branch> j = r.getBranches().iterator(); j.hasNext();) {
-                Branch b = j.next();
-                boolean keep = false;
-                for (BranchSpec bspec : gitSCM.getBranches()) {
-                    if (bspec.matches(b.getName(), env)) {
-                        keep = true;
-                        break;
-                    }
-                }
-
-                if (!keep) {
-                    verbose(listener, "Ignoring {0} because it doesn''t match branch specifier", b);
-                    j.remove();
-                }
-            }
-            
-            // filter out HEAD ref if it's not the only ref
-            if (r.getBranches().size() > 1) {
-                for (Iterator<Branch> j = r.getBranches().iterator(); j.hasNext();) {
-                    Branch b = j.next();
-                    if (HEAD.matches(b.getName(), env)) {
-                    	verbose(listener, "Ignoring {0} because there''s named branch for this revision", b.getName());
-                    	j.remove();
-                    }
-                }
-            }
-
-            if (r.getBranches().size() == 0) {
-                verbose(listener, "Ignoring {0} because we don''t care about any of the branches that point to it", r);
-                i.remove();
-            }
-        }
-
-        verbose(listener, "After branch filtering: {0}", revs);
-
+        // actually care about (spec), and
         // 3. We only want 'tip' revisions
-        revs = utils.filterTipBranches(revs);
+        BranchSpecMatcher matcher = gitSCM.getBranchSpecMatcher(env);
+        List<Revision> revs = getTipRevisions(utils, matcher, listener);
         verbose(listener, "After non-tip filtering: {0}", revs);
 
         // 4. Finally, remove any revisions that have already been built.
         verbose(listener, "Removing what''s already been built: {0}", data.getBuildsByBranchName());
         Revision lastBuiltRevision = data.getLastBuiltRevision();
-        for (Iterator<Revision> i = revs.iterator(); i.hasNext();) {
-            Revision r = i.next();
-
-            if (data.hasBeenBuilt(r.getSha1())) {
-                i.remove();
-                
+        List<Revision> candidates = new ArrayList<Revision>();
+        for (Revision r : revs) {
+            if (!data.hasBeenBuilt(r.getSha1())) {
+                candidates.add(copyNamed(r, env, listener));
+            } else if (lastBuiltRevision != null && lastBuiltRevision.getSha1().equals(r.getSha1())) {
                 // keep track of new branches pointing to the last built revision
-                if (lastBuiltRevision != null && lastBuiltRevision.getSha1().equals(r.getSha1())) {
-                	lastBuiltRevision = r;
-                }
+                lastBuiltRevision = copyNamed(r, env, listener);
             }
         }
+        revs = candidates;
         verbose(listener, "After filtering out what''s already been built: {0}", revs);
 
         // if we're trying to run a build (not an SCM poll) and nothing new
@@ -281,12 +255,326 @@ public class DefaultBuildChooser extends BuildChooser {
         final List<Revision> in = revs;
         return utils.git.withRepository(new RepositoryCallback<List<Revision>>() {
             public List<Revision> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
-                Collections.sort(in,new CommitTimeComparator(repo));
+                CommitTimeCache.sort(repo, in);
                 return in;
             }
         });
     }
 
+    /**
+     * Gets the revisions of the remote branches that match the branch specs, and are not the ancestor of another one.
+     *
+     * <p>
+     * The remote branches are listed as names and commits, and compared to the ones seen by the previous call
+     * for the same job and repository. Only those that are new or have moved are matched against the specs and added
+     * to the revisions kept from that call. The tips are then sorted out among the revisions that changed,
+     * the tips of the previous call, and the revisions whose known descendant is gone; the other revisions are
+     * still the ancestor of a revision that is there. Everything is matched again when there is no such call,
+     * or the specs have changed.
+     *
+     * @return
+     *      revisions shared with the next calls, not to be modified.
+     */
+    private List<Revision> getTipRevisions(GitUtils utils, BranchSpecMatcher matcher, TaskListener listener) throws GitException, IOException, InterruptedException {
+        Map<String, ObjectId> heads = utils.git.withRepository(new ListRemoteBranches());
+        String repository = getRepositoryKey(utils.git.getWorkTree());
+
+        BranchSnapshot previous;
+        synchronized (snapshots) {
+            Map<String, BranchSnapshot> byRepository = snapshots.get(gitSCM);
+            previous = byRepository == null ? null : byRepository.get(repository);
+        }
+        if (previous != null && previous.matcher != matcher) {
+            verbose(listener, "Branch specifier changed, matching all the branches again");
+            previous = null;
+        }
+
+        Map<ObjectId, Revision> revisions = previous == null
+                ? new HashMap<ObjectId, Revision>()
+                : new HashMap<ObjectId, Revision>(previous.revisions);
+        // revisions not shared with the previous snapshot, which can be modified
+        Set<ObjectId> copied = new HashSet<ObjectId>();
+
+        List<Branch> changed = new ArrayList<Branch>();
+        for (Map.Entry<String, ObjectId> e : heads.entrySet()) {
+            if (previous == null || !e.getValue().equals(previous.heads.get(e.getKey()))) {
+                changed.add(new Branch(e.getKey(), e.getValue()));
+            }
+        }
+        if (previous == null) {
+            verbose(listener, "Starting with all the branches: {0}", changed);
+        } else {
+            // take the branches that moved or are gone out of their former revision
+            for (Map.Entry<String, ObjectId> e : previous.heads.entrySet()) {
+                if (e.getValue().equals(heads.get(e.getKey())) || !revisions.containsKey(e.getValue())) {
+                    continue;
+                }
+                Revision r = copy(revisions, copied, e.getValue());
+                for (Iterator<Branch> j = r.getBranches().iterator(); j.hasNext();) {
+                    if (j.next().getName().equals(e.getKey())) {
+                        j.remove();
+                    }
+                }
+                if (r.getBranches().isEmpty()) {
+                    revisions.remove(e.getValue());
+                }
+            }
+            verbose(listener, "Starting with the branches created or moved since last time: {0}", changed);
+        }
+
+        for (Branch b : changed) {
+            if (matcher.matches(b.getName())) {
+                copy(revisions, copied, b.getSHA1()).getBranches().add(b);
+            } else {
+                verbose(listener, "Ignoring {0} because it doesn''t match branch specifier", b);
+            }
+        }
+
+        // the revisions whose tip status may have changed
+        Map<ObjectId, Revision> unsorted = new LinkedHashMap<ObjectId, Revision>();
+        Map<ObjectId, ObjectId> descendants = new HashMap<ObjectId, ObjectId>();
+        if (previous == null) {
+            unsorted.putAll(revisions);
+        } else {
+            for (ObjectId sha1 : copied) {
+                if (revisions.containsKey(sha1)) {
+                    unsorted.put(sha1, revisions.get(sha1));
+                }
+            }
+            for (ObjectId sha1 : previous.tips) {
+                if (revisions.containsKey(sha1)) {
+                    unsorted.put(sha1, revisions.get(sha1));
+                }
+            }
+            for (Map.Entry<ObjectId, ObjectId> e : previous.descendants.entrySet()) {
+                if (!revisions.containsKey(e.getKey()) || unsorted.containsKey(e.getKey())) {
+                    continue;
+                }
+                if (revisions.containsKey(e.getValue())) {
+                    descendants.put(e.getKey(), e.getValue());
+                } else {
+                    unsorted.put(e.getKey(), revisions.get(e.getKey()));
+                }
+            }
+        }
+        verbose(listener, "After branch filtering, sorting out: {0}", unsorted.values());
+
+        List<Revision> tips = new ArrayList<Revision>(unsorted.values());
+        if (tips.size() > 1) {
+            FilteredTips filtered = utils.git.withRepository(new FilterTips(tips));
+            tips = filtered.tips;
+            descendants.putAll(filtered.descendants);
+        }
+
+        Set<ObjectId> tipCommits = new HashSet<ObjectId>();
+        for (Revision r : tips) {
+            tipCommits.add(r.getSha1());
+        }
+        synchronized (snapshots) {
+            Map<String, BranchSnapshot> byRepository = snapshots.get(gitSCM);
+            if (byRepository == null) {
+                byRepository = new HashMap<String, BranchSnapshot>();
+                snapshots.put(gitSCM, byRepository);
+            }
+            byRepository.put(repository, new BranchSnapshot(matcher, heads, revisions, tipCommits, descendants));
+        }
+        return tips;
+    }
+
+    /**
+     * Tells the repositories a job polls or builds in apart, by the node and the path of their working tree.
+     */
+    private static String getRepositoryKey(FilePath workTree) {
+        VirtualChannel channel = workTree.getChannel();
+        return (channel instanceof Channel ? ((Channel) channel).getName() : "") + ':' + workTree.getRemote();
+    }
+
+    /**
+     * Gets the revision of a commit that can be modified, copying it from the previous snapshot if needed.
+     */
+    private static Revision copy(Map<ObjectId, Revision> revisions, Set<ObjectId> copied, ObjectId sha1) {
+        Revision r = revisions.get(sha1);
+        if (copied.add(sha1)) {
+            r = r == null ? new Revision(sha1) : new Revision(sha1, new ArrayList<Branch>(r.getBranches()));
+            revisions.put(sha1, r);
+        }
+        return r;
+    }
+
+    /**
+     * Copies a revision of the snapshot, without HEAD if there are named branches.
+     */
+    private Revision copyNamed(Revision r, EnvVars env, TaskListener listener) {
+        List<Branch> named = getNamedBranches(r, env);
+        if (named.size() < r.getBranches().size()) {
+            verbose(listener, "Ignoring HEAD of {0} because there''s named branch for this revision", r);
+        }
+        return new Revision(r.getSha1(), named);
+    }
+
+    /**
+     * Gets the branches of a revision, but HEAD if there are other ones, in the order of their names.
+     */
+    private static List<Branch> getNamedBranches(Revision r, EnvVars env) {
+        List<Branch> named = new ArrayList<Branch>(r.getBranches());
+        if (named.size() > 1) {
+            for (Iterator<Branch> j = named.iterator(); j.hasNext();) {
+                if (HEAD.matches(j.next().getName(), env)) {
+                    j.remove();
+                }
+            }
+        }
+        Collections.sort(named, BY_NAME);
+        return named;
+    }
+
+    private static final Comparator<Branch> BY_NAME = new Comparator<Branch>() {
+        public int compare(Branch b1, Branch b2) {
+            return b1.getName().compareTo(b2.getName());
+        }
+    };
+
+    /**
+     * Remote branches last seen for each job, by repository, see {@link #getTipRevisions(GitUtils, BranchSpecMatcher, TaskListener)}.
+     * Dropped along with the configuration of the job.
+     */
+    private static final Map<GitSCM, Map<String, BranchSnapshot>> snapshots = new WeakHashMap<GitSCM, Map<String, BranchSnapshot>>();
+
+    private static final class BranchSnapshot {
+        /**
+         * Matcher of the branch specs, which {@link GitSCM#getBranchSpecMatcher(EnvVars)} keeps as long as they do not change.
+         */
+        final BranchSpecMatcher matcher;
+        /**
+         * All the remote branches, by name.
+         */
+        final Map<String, ObjectId> heads;
+        /**
+         * The revisions of the branches matching the specs, by commit.
+         */
+        final Map<ObjectId, Revision> revisions;
+        /**
+         * The commits of the revisions that are not the ancestor of another one.
+         */
+        final Set<ObjectId> tips;
+        /**
+         * The commits of the other revisions, each with the commit of a revision it is the ancestor of.
+         */
+        final Map<ObjectId, ObjectId> descendants;
+
+        BranchSnapshot(BranchSpecMatcher matcher, Map<String, ObjectId> heads, Map<ObjectId, Revision> revisions,
+                       Set<ObjectId> tips, Map<ObjectId, ObjectId> descendants) {
+            this.matcher = matcher;
+            this.heads = heads;
+            this.revisions = revisions;
+            this.tips = tips;
+            this.descendants = descendants;
+        }
+    }
+
+    /**
+     * Lists the remote branches like {@link GitClient#getRemoteBranches()}, as names and commits only.
+     * Symbolic refs, such as the default branch of a remote, are left out, as "git branch" lists them as aliases.
+     */
+    private static final class ListRemoteBranches implements RepositoryCallback<Map<String, ObjectId>> {
+        public Map<String, ObjectId> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String, ObjectId> heads = new HashMap<String, ObjectId>();
+            for (Map.Entry<String, Ref> e : repo.getRefDatabase().getRefs(Constants.R_REMOTES).entrySet()) {
+                Ref ref = e.getValue();
+                if (!ref.isSymbolic() && ref.getObjectId() != null) {
+                    heads.put(e.getKey(), ref.getObjectId());
+                }
+            }
+            return heads;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Sorts out revisions with {@link TipFilter}.
+     */
+    private static final class FilterTips implements RepositoryCallback<FilteredTips> {
+        private final List<Revision> revisions;
+
+        FilterTips(List<Revision> revisions) {
+            this.revisions = revisions;
+        }
+
+        public FilteredTips invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<ObjectId, ObjectId> descendants = new HashMap<ObjectId, ObjectId>();
+            List<Revision> tips = TipFilter.filter(repo, revisions, descendants);
+            return new FilteredTips(tips, descendants);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class FilteredTips implements Serializable {
+        final List<Revision> tips;
+        final Map<ObjectId, ObjectId> descendants;
+
+        FilteredTips(List<Revision> tips, Map<ObjectId, ObjectId> descendants) {
+            this.tips = tips;
+            this.descendants = descendants;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Resolves names to commits like {@link GitClient#revParse(String)}, but all of them at once.
+     *
+     * <p>
+     * Names are looked up with {@link Repository#getRef(String)}, which qualifies them the way
+     * "git rev-parse" does, and then as the default branch of a remote. Only names that are not refs,
+     * such as SHA1s, are left to {@link Repository#resolve(String)}. Names that do not resolve to a commit are left out.
+     */
+    private static final class RevParse implements RepositoryCallback<Map<String, ObjectId>> {
+        private final List<String> names;
+
+        RevParse(List<String> names) {
+            this.names = names;
+        }
+
+        public Map<String, ObjectId> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String, ObjectId> resolved = new HashMap<String, ObjectId>();
+            RevWalk walk = new RevWalk(repo);
+            try {
+                for (String name : names) {
+                    try {
+                        ObjectId id = find(repo, name);
+                        if (id == null) {
+                            id = repo.resolve(name + "^{commit}");
+                        }
+                        if (id != null) {
+                            // peel tags
+                            resolved.put(name, walk.parseCommit(id).copy());
+                        }
+                    } catch (IOException e) {
+                        // not a commit, or not there
+                    } catch (RevisionSyntaxException e) {
+                        // not a revision
+                    }
+                }
+            } finally {
+                walk.release();
+            }
+            return resolved;
+        }
+
+        private static ObjectId find(Repository repo, String name) throws IOException {
+            Ref ref = repo.getRef(name);
+            if (ref == null) {
+                // "origin" stands for the default branch of that remote
+                ref = repo.getRef(Constants.R_REMOTES + name + "/" + Constants.HEAD);
+            }
+            return ref == null ? null : ref.getObjectId();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
     /**
      * Write the message to the listener only when the verbose mode is on.
      */
@@ -7,23 +7,20 @@ import hudson.Launcher;
 import hudson.model.*;
 import hudson.plugins.git.Branch;
 import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.BranchSpecMatcher;
 import hudson.plugins.git.GitException;
 import hudson.plugins.git.Revision;
 import hudson.remoting.VirtualChannel;
 import hudson.slaves.NodeProperty;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.text.MessageFormat;
 import java.util.*;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GitUtils implements Serializable {
@@ -88,16 +85,26 @@ public class GitUtils implements Serializable {
 
     public Revision sortBranchesForRevision(Revision revision, List<BranchSpec> branchOrder, EnvVars env) {
         ArrayList<Branch> orderedBranches = new ArrayList<Branch>(revision.getBranches().size());
-        ArrayList<Branch> revisionBranches = new ArrayList<Branch>(revision.getBranches());
-
-        for(BranchSpec branchSpec : branchOrder) {
-            for (Iterator<Branch> i = revisionBranches.iterator(); i.hasNext();) {
-                Branch b = i.next();
-                if (branchSpec.matches(b.getName(), env)) {
-                    i.remove();
-                    orderedBranches.add(b);
-                }
+        ArrayList<Branch> revisionBranches = new ArrayList<Branch>();
+        BranchSpecMatcher matcher = new BranchSpecMatcher(branchOrder, env);
+
+        // group the branches by the first spec they match, keeping their order within a group
+        SortedMap<Integer, List<Branch>> bySpec = new TreeMap<Integer, List<Branch>>();
+        for (Branch b : revision.getBranches()) {
+            int index = matcher.indexOf(b.getName());
+            if (index < 0) {
+                revisionBranches.add(b);
+                continue;
+            }
+            List<Branch> group = bySpec.get(index);
+            if (group == null) {
+                group = new ArrayList<Branch>();
+                bySpec.put(index, group);
             }
+            group.add(b);
+        }
+        for (List<Branch> group : bySpec.values()) {
+            orderedBranches.addAll(group);
         }
 
         orderedBranches.addAll(revisionBranches);
@@ -106,6 +113,7 @@ public class GitUtils implements Serializable {
 
     /**
      * Return a list of 'tip' branches (I.E. branches that aren't included entirely within another branch).
+     * What is found out is remembered for the repository, so that the next call only walks the history of the revisions that changed.
      *
      * @param revisions
      * @return filtered tip branches
@@ -126,58 +134,7 @@ public class GitUtils implements Serializable {
         try {
             return git.withRepository(new RepositoryCallback<List<Revision>>() {
                 public List<Revision> invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
-
-                    // Commit nodes that we have already reached
-                    Set<RevCommit> visited = new HashSet<RevCommit>();
-                    // Commits nodes that are tips if we don't reach them walking back from
-                    // another node
-                    Map<RevCommit, Revision> tipCandidates = new HashMap<RevCommit, Revision>();
-
-                    long calls = 0;
-                    final long start = System.currentTimeMillis();
-
-                    RevWalk walk = new RevWalk(repo);
-
-                    final boolean log = LOGGER.isLoggable(Level.FINE);
-
-                    if (log)
-                        LOGGER.fine(MessageFormat.format(
-                                "Computing merge base of {0}  branches", l.size()));
-
-                    try {
-                        walk.setRetainBody(false);
-
-                        // Each commit passed in starts as a potential tip.
-                        // We walk backwards in the commit's history, until we reach the
-                        // beginning or a commit that we have already visited. In that case,
-                        // we mark that one as not a potential tip.
-                        for (Revision r : revisions) {
-                            walk.reset();
-                            RevCommit head = walk.parseCommit(r.getSha1());
-
-                            tipCandidates.put(head, r);
-
-                            walk.markStart(head);
-                            for (RevCommit commit : walk) {
-                                calls++;
-                                if (visited.contains(commit)) {
-                                    tipCandidates.remove(commit);
-                                    break;
-                                }
-                                visited.add(commit);
-                            }
-                        }
-
-                    } finally {
-                        walk.release();
-                    }
-
-                    if (log)
-                        LOGGER.fine(MessageFormat.format(
-                                "Computed merge bases in {0} commit steps and {1} ms", calls,
-                                (System.currentTimeMillis() - start)));
-
-                    return new ArrayList<Revision>(tipCandidates.values());
+                    return TipFilter.filter(repo, l);
                 }
             });
         } catch (IOException e) {
@@ -0,0 +1,213 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.extensions.impl.PathRestriction;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of the included and excluded regions of a {@link PathRestriction}.
+ *
+ * <p>
+ * Regions that are plain paths, or plain paths preceded or followed by ".*", are checked as strings.
+ * The other regions are combined into a single regular expression when that cannot change their meaning.
+ * Knowing the plain prefixes also tells whole directories that cannot contain any path of interest,
+ * see {@link #mayContainRelevant(String)}.
+ */
+public final class PathRegionMatcher implements Serializable {
+
+    private final Regions included;
+    private final Regions excluded;
+
+    /**
+     * @param includedRegions
+     *      regular expressions of the paths of interest, or null for all paths.
+     * @param excludedRegions
+     *      regular expressions of the paths to disregard among them, or null for none.
+     * @throws java.util.regex.PatternSyntaxException
+     *      if one of the regions is not a valid regular expression.
+     */
+    public PathRegionMatcher(String[] includedRegions, String[] excludedRegions) {
+        this.included = new Regions(includedRegions);
+        this.excluded = new Regions(excludedRegions);
+    }
+
+    /**
+     * Whether the path matches an included region, or there are no included regions.
+     */
+    public boolean isIncluded(String path) {
+        return included.isEmpty() || included.matches(path);
+    }
+
+    /**
+     * Whether the path matches an excluded region.
+     */
+    public boolean isExcluded(String path) {
+        return !excluded.isEmpty() && excluded.matches(path);
+    }
+
+    /**
+     * Whether a change to the path matters, that is whether it is included and not excluded.
+     */
+    public boolean isRelevant(String path) {
+        return isIncluded(path) && !isExcluded(path);
+    }
+
+    /**
+     * Whether {@link #mayContainRelevant(String)} can ever tell a directory apart.
+     */
+    public boolean canPrune() {
+        return included.isLiteral() || excluded.prefixes.length > 0;
+    }
+
+    /**
+     * Whether a directory may contain {@linkplain #isRelevant(String) relevant} paths.
+     * When it cannot, the path of the directory itself is not relevant either.
+     *
+     * @param directory
+     *      path of the directory, followed by a slash.
+     */
+    public boolean mayContainRelevant(String directory) {
+        for (String prefix : excluded.prefixes) {
+            if (directory.startsWith(prefix)) {
+                return false; // everything in there is excluded
+            }
+        }
+        if (included.isLiteral()) {
+            for (String prefix : included.prefixes) {
+                if (prefix.startsWith(directory) || directory.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            for (String path : included.exact) {
+                if (path.startsWith(directory)) {
+                    return true;
+                }
+            }
+            return false; // nothing in there can be included
+        }
+        return true;
+    }
+
+    /**
+     * Regions of one kind, with the plain ones taken apart from the regular expressions.
+     */
+    private static final class Regions implements Serializable {
+        private final Set<String> exact = new HashSet<String>();
+        private final String[] prefixes;
+        private final String[] suffixes;
+        private final Pattern[] patterns;
+
+        Regions(String[] regions) {
+            List<String> prefixes = new ArrayList<String>();
+            List<String> suffixes = new ArrayList<String>();
+            List<Pattern> patterns = new ArrayList<Pattern>();
+            StringBuilder combined = new StringBuilder();
+            if (regions != null) {
+                for (String region : regions) {
+                    Pattern pattern = Pattern.compile(region);
+                    String literal;
+                    if ((literal = literal(region, 0, region.length())) != null) {
+                        exact.add(literal);
+                    } else if (isAnything(region, region.length() - 2)
+                            && (literal = literal(region, 0, region.length() - 2)) != null) {
+                        prefixes.add(literal);
+                    } else if (isAnything(region, 0) && (literal = literal(region, 2, region.length())) != null) {
+                        suffixes.add(literal);
+                    } else if (canCombine(region)) {
+                        combined.append(combined.length() == 0 ? "" : "|").append("(?:").append(region).append(')');
+                    } else {
+                        patterns.add(pattern);
+                    }
+                }
+            }
+            if (combined.length() > 0) {
+                patterns.add(0, Pattern.compile(combined.toString()));
+            }
+            this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+            this.suffixes = suffixes.toArray(new String[suffixes.size()]);
+            this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+        }
+
+        boolean isEmpty() {
+            return exact.isEmpty() && prefixes.length == 0 && suffixes.length == 0 && patterns.length == 0;
+        }
+
+        /**
+         * Whether all the regions are plain paths or plain prefixes.
+         */
+        boolean isLiteral() {
+            return !isEmpty() && suffixes.length == 0 && patterns.length == 0;
+        }
+
+        boolean matches(String path) {
+            if (exact.contains(path)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (path.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            for (String suffix : suffixes) {
+                if (path.endsWith(suffix)) {
+                    return true;
+                }
+            }
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether the region has an unescaped ".*" at the given position.
+         */
+        private static boolean isAnything(String region, int i) {
+            return i >= 0 && region.startsWith(".*", i) && (i == 0 || region.charAt(i - 1) != '\\');
+        }
+
+        /**
+         * Gets the string a part of a region stands for, if it is made of plain and escaped characters only.
+         *
+         * @return
+         *      null if that part uses any regular expression construct.
+         */
+        private static String literal(String region, int start, int end) {
+            StringBuilder literal = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = region.charAt(i);
+                if (c == '\\') {
+                    if (++i == end || Character.isLetterOrDigit(region.charAt(i))) {
+                        return null; // \d, \Q, back references...
+                    }
+                    c = region.charAt(i);
+                } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+                    return null;
+                }
+                literal.append(c);
+            }
+            return literal.toString();
+        }
+
+        /**
+         * Whether the region means the same once enclosed in a group and put next to others.
+         */
+        private static boolean canCombine(String region) {
+            return !region.contains("\\Q") // quotes up to the end
+                    && !region.contains("#") // comment up to the end in (?x) mode
+                    && !region.contains("(?<") // named groups must be unique
+                    && !region.contains("\\k") && !region.matches("(?s).*\\\\[1-9].*"); // back references are numbered
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,519 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.Revision;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tells which of some revisions are not the ancestor of another one, for {@link GitUtils#filterTipBranches(java.util.Collection)}.
+ *
+ * <p>
+ * All the revisions are walked back at once, each commit remembering a revision it is reachable from,
+ * and a revision reached from another one is not a tip. Commits are walked by generation number, the length of
+ * the longest path from them to a root commit, which is always larger for a commit than for any of its ancestors.
+ * Unlike commit times, generation numbers cannot tie or be skewed between a commit and its ancestors, so the walk
+ * stops as soon as no commit left to walk has a larger generation number than a revision not yet reached.
+ *
+ * <p>
+ * What each call finds out is remembered for the repository, as commits never change: the revisions that were tips
+ * are known not to be ancestors of one another, each other revision is known to be the ancestor of some revision,
+ * and the generation number of each commit is kept, so that only new commits need to be parsed to number them.
+ * The next call with the same revisions does not walk at all, and neither does one where all the other revisions
+ * are known ancestors of revisions still there. Otherwise, the walk starts from the new revisions and the known tips,
+ * and when one branch moved, only goes through the commits between it and the other tips.
+ *
+ * <p>
+ * Generation numbers are also kept in a file of the git directory, {@value #FILE_NAME}, to which the numbers of new
+ * commits are added after each walk, so that the history of a repository is only parsed once. The numbers of the
+ * repositories looked at last are kept in memory as long as there are no more than {@link #MAX_GENERATIONS}
+ * of them in all; the others are read again from their file when needed.
+ */
+/*package*/ final class TipFilter {
+
+    /**
+     * Maximum number of repositories whose revisions are remembered.
+     */
+    static final int CACHE_SIZE = Integer.getInteger(TipFilter.class.getName() + ".cacheSize", 16);
+
+    static final String FILE_NAME = "jenkins-generations";
+
+    /**
+     * Maximum number of generation numbers kept in memory, over all repositories.
+     */
+    static final int MAX_GENERATIONS = Integer.getInteger(TipFilter.class.getName() + ".maxGenerations", 1000000);
+
+    private static final Map<File, Reachability> cache = new LinkedHashMap<File, Reachability>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Reachability> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private TipFilter() {
+    }
+
+    /**
+     * Gets the revisions that are not the ancestor of another one, in their original order.
+     * Of several revisions of the same commit, only the first one is kept.
+     */
+    static List<Revision> filter(Repository repository, List<Revision> revisions) throws IOException {
+        return filter(repository, revisions, null);
+    }
+
+    /**
+     * Gets the revisions that are not the ancestor of another one, in their original order,
+     * and tells what the other ones are the ancestor of.
+     *
+     * @param descendants
+     *      if not null, given the commit of each revision that is not a tip, along with the commit of a revision
+     *      it is the ancestor of.
+     */
+    static List<Revision> filter(Repository repository, List<Revision> revisions, Map<ObjectId, ObjectId> descendants) throws IOException {
+        Reachability known;
+        synchronized (cache) {
+            known = cache.get(repository.getDirectory());
+        }
+
+        // tell each commit from what is known of it
+        Map<ObjectId, Revision> byCommit = new LinkedHashMap<ObjectId, Revision>();
+        for (Revision r : revisions) {
+            if (!byCommit.containsKey(r.getSha1())) {
+                byCommit.put(r.getSha1(), r);
+            }
+        }
+        Set<ObjectId> tips = new HashSet<ObjectId>();
+        Map<ObjectId, ObjectId> ancestors = new HashMap<ObjectId, ObjectId>();
+        List<ObjectId> unknown = new ArrayList<ObjectId>();
+        for (ObjectId commit : byCommit.keySet()) {
+            ObjectId descendant = known == null ? null : known.ancestors.get(commit);
+            if (known != null && known.tips.contains(commit)) {
+                tips.add(commit);
+            } else if (descendant != null && byCommit.containsKey(descendant)) {
+                ancestors.put(commit, descendant);
+            } else {
+                unknown.add(commit);
+            }
+        }
+
+        long steps = 0;
+        if (!unknown.isEmpty()) {
+            Generations generations = Generations.of(repository);
+            synchronized (generations) {
+                steps = walk(repository, unknown, tips, ancestors, generations);
+                generations.save();
+            }
+            Generations.trim();
+        }
+
+        synchronized (cache) {
+            cache.put(repository.getDirectory(), new Reachability(tips, ancestors, steps));
+        }
+
+        if (descendants != null) {
+            descendants.putAll(ancestors);
+        }
+
+        List<Revision> filtered = new ArrayList<Revision>(tips.size());
+        for (Map.Entry<ObjectId, Revision> e : byCommit.entrySet()) {
+            if (tips.contains(e.getKey())) {
+                filtered.add(e.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Gets the number of commits the last call for the repository parsed or walked through, for tests.
+     */
+    static long getLastSteps(Repository repository) {
+        synchronized (cache) {
+            Reachability known = cache.get(repository.getDirectory());
+            return known == null ? 0 : known.steps;
+        }
+    }
+
+    /**
+     * Forgets all that is kept in memory, for tests.
+     */
+    static void forget() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        synchronized (Generations.loaded) {
+            Generations.loaded.clear();
+        }
+    }
+
+    /**
+     * Sorts out the unknown commits, and the known tips that turn out to be the ancestor of one of them.
+     * Known ancestors are left out of the walk: their history is part of that of their descendant.
+     *
+     * @param tips
+     *      commits known not to be the ancestor of one another, updated with the tips among the unknown commits.
+     * @param ancestors
+     *      updated with the commits that are not tips, each with a commit among all the given ones it is the ancestor of.
+     * @param generations
+     *      generation numbers known for the repository, updated with those of the commits parsed to number the candidates.
+     * @return
+     *      the number of commits parsed or walked through.
+     */
+    private static long walk(Repository repository, List<ObjectId> unknown, Set<ObjectId> tips, Map<ObjectId, ObjectId> ancestors, Generations generations) throws IOException {
+        final boolean log = LOGGER.isLoggable(Level.FINE);
+        final long start = System.currentTimeMillis();
+
+        RevWalk walk = new RevWalk(repository) {
+            @Override
+            protected RevCommit createCommit(AnyObjectId id) {
+                return new Node(id);
+            }
+        };
+        try {
+            walk.setRetainBody(false);
+            List<Node> candidates = new ArrayList<Node>();
+            for (ObjectId id : unknown) {
+                candidates.add((Node) walk.parseCommit(id));
+            }
+            for (ObjectId id : tips) {
+                candidates.add((Node) walk.parseCommit(id));
+            }
+            PriorityQueue<Node> queue = new PriorityQueue<Node>(candidates.size(), NEWEST_GENERATION_FIRST);
+            for (Node n : candidates) {
+                generations.number(walk, n);
+                n.candidate = true;
+                n.queued = true;
+                queue.add(n);
+            }
+
+            // the candidates not reached yet, lowest generation last
+            List<Node> unresolved = new ArrayList<Node>(candidates);
+            Collections.sort(unresolved, NEWEST_GENERATION_FIRST);
+
+            // a commit can only reach commits of a lower generation, and comes up after all its descendants,
+            // so once none left has a higher generation than a candidate not reached yet, none ever will
+            long calls = 0;
+            while (!queue.isEmpty()) {
+                while (!unresolved.isEmpty() && unresolved.get(unresolved.size() - 1).reachedFrom != null) {
+                    unresolved.remove(unresolved.size() - 1);
+                }
+                if (unresolved.isEmpty()
+                        || queue.peek().generation <= unresolved.get(unresolved.size() - 1).generation) {
+                    break;
+                }
+
+                calls++;
+                Node n = queue.poll();
+                walk.parseHeaders(n);
+                Node from = n.candidate ? n : n.reachedFrom;
+                for (RevCommit p : n.getParents()) {
+                    Node parent = (Node) p;
+                    if (parent.reachedFrom == null) {
+                        parent.reachedFrom = from;
+                    }
+                    if (!parent.queued) {
+                        generations.number(walk, parent);
+                        parent.queued = true;
+                        queue.add(parent);
+                    }
+                }
+            }
+
+            for (Node n : candidates) {
+                if (n.reachedFrom != null) {
+                    tips.remove(n);
+                    ancestors.put(n.copy(), n.reachedFrom.copy());
+                } else {
+                    tips.add(n.copy());
+                }
+            }
+
+            long parsed = generations.getUnsaved();
+            if (log)
+                LOGGER.fine(MessageFormat.format(
+                        "Computed tips of {0} new commits in {1} commit steps, numbering {2} new commits, in {3} ms",
+                        unknown.size(), calls, parsed, (System.currentTimeMillis() - start)));
+            return calls + parsed;
+        } finally {
+            walk.release();
+        }
+    }
+
+    private static final Comparator<Node> NEWEST_GENERATION_FIRST = new Comparator<Node>() {
+        public int compare(Node a, Node b) {
+            return a.generation > b.generation ? -1 : a.generation < b.generation ? 1 : 0;
+        }
+    };
+
+    /**
+     * A commit, with what the walk knows about it.
+     */
+    private static final class Node extends RevCommit {
+        /**
+         * Candidate this commit is reachable from through at least one parent link, or null if none was found.
+         * Every commit the walk comes to has one, but the candidates that are tips.
+         */
+        Node reachedFrom;
+        boolean candidate;
+        boolean queued;
+        /**
+         * Generation number, or 0 if not known yet.
+         */
+        int generation;
+
+        Node(AnyObjectId id) {
+            super(id);
+        }
+    }
+
+    /**
+     * Generation numbers of the commits of a repository: 1 for a root commit, and one more than the highest
+     * of its parents for any other commit.
+     *
+     * <p>
+     * The file only ever grows: after the version, it holds the id and generation number of each commit,
+     * a commit always coming after its parents.
+     */
+    private static final class Generations {
+        private static final int VERSION = 1;
+
+        private static final int RECORD_LENGTH = Constants.OBJECT_ID_LENGTH + 4;
+
+        /**
+         * Numbers kept in memory, the repository looked at last coming last.
+         */
+        private static final Map<File, Generations> loaded = new LinkedHashMap<File, Generations>(16, 0.75f, true);
+
+        private final File file;
+        /**
+         * Null until read from the file.
+         */
+        private ObjectIdSubclassMap<Generation> numbers;
+        /**
+         * Numbers not written to the file yet, in the order they were found out.
+         */
+        private final List<Generation> unsaved = new ArrayList<Generation>();
+        private volatile int size;
+
+        private Generations(File file) {
+            this.file = file;
+        }
+
+        static Generations of(Repository repository) {
+            synchronized (loaded) {
+                Generations generations = loaded.get(repository.getDirectory());
+                if (generations == null) {
+                    generations = new Generations(new File(repository.getDirectory(), FILE_NAME));
+                    loaded.put(repository.getDirectory(), generations);
+                }
+                return generations;
+            }
+        }
+
+        /**
+         * Drops from memory the numbers of the repositories looked at least recently,
+         * until no more than {@link #MAX_GENERATIONS} are left.
+         */
+        static void trim() {
+            synchronized (loaded) {
+                long total = 0;
+                for (Generations g : loaded.values()) {
+                    total += g.size;
+                }
+                for (Iterator<Generations> i = loaded.values().iterator(); total > MAX_GENERATIONS && i.hasNext();) {
+                    Generations g = i.next();
+                    LOGGER.fine(MessageFormat.format("Forgetting the generation numbers of {0} commits of {1}", g.size, g.file));
+                    total -= g.size;
+                    i.remove();
+                }
+            }
+        }
+
+        /**
+         * Sets the generation number of a commit, parsing those of its ancestors not numbered yet.
+         */
+        void number(RevWalk walk, Node commit) throws IOException {
+            if (numbers == null) {
+                numbers = load();
+                size = numbers.size();
+            }
+            // depth first, without recursion as histories can be very deep
+            List<Node> stack = new ArrayList<Node>();
+            stack.add(commit);
+            while (!stack.isEmpty()) {
+                Node n = stack.get(stack.size() - 1);
+                if (isNumbered(n)) {
+                    stack.remove(stack.size() - 1);
+                    continue;
+                }
+                walk.parseHeaders(n);
+                int generation = 0;
+                boolean ready = true;
+                for (RevCommit p : n.getParents()) {
+                    Node parent = (Node) p;
+                    if (isNumbered(parent)) {
+                        generation = Math.max(generation, parent.generation);
+                    } else {
+                        ready = false;
+                        stack.add(parent);
+                    }
+                }
+                if (ready) {
+                    n.generation = generation + 1;
+                    Generation g = new Generation(n, n.generation);
+                    numbers.add(g);
+                    unsaved.add(g);
+                    size++;
+                    stack.remove(stack.size() - 1);
+                }
+            }
+        }
+
+        private boolean isNumbered(Node n) {
+            if (n.generation == 0) {
+                Generation g = numbers.get(n);
+                if (g != null) {
+                    n.generation = g.number;
+                }
+            }
+            return n.generation != 0;
+        }
+
+        /**
+         * Gets the number of commits numbered since the last {@link #save()}.
+         */
+        long getUnsaved() {
+            return unsaved.size();
+        }
+
+        private ObjectIdSubclassMap<Generation> load() {
+            ObjectIdSubclassMap<Generation> read = new ObjectIdSubclassMap<Generation>();
+            synchronized (Generations.class) {
+                if (!file.exists()) {
+                    return read;
+                }
+                long length = 0;
+                try {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    try {
+                        if (in.readInt() != VERSION) {
+                            in.close();
+                            file.delete();
+                            return read;
+                        }
+                        length = 4;
+                        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+                        while (true) {
+                            in.readFully(raw);
+                            read.addIfAbsent(new Generation(ObjectId.fromRaw(raw), in.readInt()));
+                            length += RECORD_LENGTH;
+                        }
+                    } catch (EOFException e) {
+                        // the end, or a record cut short by a failed write
+                    } finally {
+                        in.close();
+                    }
+                    if (file.length() != length) {
+                        // drop what a failed write left, or the next records would not line up
+                        RandomAccessFile f = new RandomAccessFile(file, "rw");
+                        try {
+                            f.setLength(length);
+                        } finally {
+                            f.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    // the numbers will be found out again
+                    LOGGER.log(Level.FINE, "Failed to read " + file, e);
+                }
+            }
+            return read;
+        }
+
+        /**
+         * Adds the numbers found out since the last call to the file.
+         */
+        void save() {
+            if (unsaved.isEmpty()) {
+                return;
+            }
+            synchronized (Generations.class) {
+                try {
+                    boolean header = file.length() == 0;
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                    try {
+                        if (header) {
+                            out.writeInt(VERSION);
+                        }
+                        for (Generation g : unsaved) {
+                            g.copyRawTo(out);
+                            out.writeInt(g.number);
+                        }
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Failed to write " + file, e);
+                }
+            }
+            unsaved.clear();
+        }
+    }
+
+    private static final class Generation extends ObjectId {
+        final int number;
+
+        Generation(AnyObjectId id, int number) {
+            super(id);
+            this.number = number;
+        }
+    }
+
+    /**
+     * What is known of the commits of the revisions last given for a repository.
+     */
+    private static final class Reachability {
+        final Set<ObjectId> tips;
+        final Map<ObjectId, ObjectId> ancestors;
+        /**
+         * Number of commits parsed or walked through to find this out.
+         */
+        final long steps;
+
+        Reachability(Set<ObjectId> tips, Map<ObjectId, ObjectId> ancestors, long steps) {
+            this.tips = tips;
+            this.ancestors = ancestors;
+            this.steps = steps;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TipFilter.class.getName());
+}
@@ -95,6 +95,9 @@ public abstract class AbstractGitSCMSource extends SCMSource {
      */
     private static final ConcurrentMap<String, Lock> cacheLocks = new ConcurrentHashMap<String, Lock>();
 
+    private transient volatile WildcardPattern includesPattern;
+    private transient volatile WildcardPattern excludesPattern;
+
     public AbstractGitSCMSource(String id) {
         super(id);
     }
@@ -301,16 +304,33 @@ public abstract class AbstractGitSCMSource extends SCMSource {
      * @return true if branchName is excluded or is not included
      */
     protected boolean isExcluded (String branchName){
-      return !Pattern.matches(getPattern(getIncludes()), branchName) || (Pattern.matches(getPattern(getExcludes()), branchName));
+      WildcardPattern includes = includesPattern = getPattern(includesPattern, getIncludes());
+      WildcardPattern excludes = excludesPattern = getPattern(excludesPattern, getExcludes());
+      return !includes.pattern.matcher(branchName).matches() || excludes.pattern.matcher(branchName).matches();
     }
     
+    /**
+     * Returns the compiled pattern corresponding to the branches containing wildcards,
+     * reusing the previous one if the wildcards did not change.
+     * 
+     * @param previous pattern compiled by an earlier call, or null
+     * @param branches space separated list of wildcards
+     * @return pattern corresponding to the branches containing wildcards
+     */
+    private static WildcardPattern getPattern(WildcardPattern previous, String branches){
+      if (previous != null && previous.wildcards.equals(branches)) {
+        return previous;
+      }
+      return new WildcardPattern(branches, Pattern.compile(getPattern(branches)));
+    }
+
     /**
      * Returns the pattern corresponding to the branches containing wildcards. 
      * 
-     * @param branchName
+     * @param branches space separated list of wildcards
      * @return pattern corresponding to the branches containing wildcards
      */
-    private String getPattern(String branches){
+    /*package*/ static String getPattern(String branches){
       StringBuilder quotedBranches = new StringBuilder();
       for (String wildcard : branches.split(" ")){
         StringBuilder quotedBranch = new StringBuilder();
@@ -331,6 +351,19 @@ public abstract class AbstractGitSCMSource extends SCMSource {
       return quotedBranches.toString();
     }
 
+    /**
+     * Includes or excludes, with the pattern they compile to.
+     */
+    private static final class WildcardPattern {
+      final String wildcards;
+      final Pattern pattern;
+
+      WildcardPattern(String wildcards, Pattern pattern) {
+        this.wildcards = wildcards;
+        this.pattern = pattern;
+      }
+    }
+
     /**
      * Our implementation.
      */
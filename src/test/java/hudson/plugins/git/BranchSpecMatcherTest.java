@@ -0,0 +1,67 @@
+package hudson.plugins.git;
+
+import hudson.EnvVars;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class BranchSpecMatcherTest extends TestCase {
+
+    private static List<BranchSpec> specs(String... names) {
+        List<BranchSpec> specs = new ArrayList<BranchSpec>();
+        for (String name : names) {
+            specs.add(new BranchSpec(name));
+        }
+        return specs;
+    }
+
+    public void testAgreesWithBranchSpecs() {
+        List<BranchSpec> specs = specs("master", "origin/*/dev", "origin/*", "**/magnayn/*", "*/my.branch/*",
+                "**/release-1.0", "origin/feature**", "origin/fix*", ":origin/(hot|cold)fix-\\d+", "**", "");
+        List<String> branches = Arrays.asList("master", "origin/master", "origin/something/master", "origin/test/dev",
+                "origin/test/somthing/release", "remotes/origin/magnayn/b1", "origin/my.branch/b1",
+                "remote/origin/my.branch/b1", "upstream/release-1.0", "origin/feature/x/y", "origin/fix-1",
+                "origin/fix/1", "origin/hotfix-12", "/master", "");
+        EnvVars env = new EnvVars();
+
+        for (int skip = 0; skip < specs.size(); skip++) {
+            // check the specs in various combinations, so that each of them ends up first at some point
+            List<BranchSpec> subset = new ArrayList<BranchSpec>(specs.subList(skip, specs.size()));
+            subset.addAll(specs.subList(0, skip));
+            BranchSpecMatcher matcher = new BranchSpecMatcher(subset, env);
+            for (String branch : branches) {
+                int expected = -1;
+                for (int i = 0; i < subset.size(); i++) {
+                    if (subset.get(i).matches(branch, env)) {
+                        expected = i;
+                        break;
+                    }
+                }
+                assertEquals(subset + " on " + branch, expected, matcher.indexOf(branch));
+            }
+        }
+    }
+
+    public void testNoSpecs() {
+        BranchSpecMatcher matcher = new BranchSpecMatcher(new ArrayList<BranchSpec>(), new EnvVars());
+        assertEquals(-1, matcher.indexOf("origin/master"));
+        assertFalse(matcher.matches(""));
+    }
+
+    public void testIsFor() {
+        List<BranchSpec> specs = specs("${BRANCH}", "master");
+        EnvVars env = new EnvVars();
+        env.put("BRANCH", "origin/dev");
+        BranchSpecMatcher matcher = new BranchSpecMatcher(specs, env);
+        assertEquals(0, matcher.indexOf("origin/dev"));
+        assertEquals(1, matcher.indexOf("origin/master"));
+        assertTrue(matcher.isFor(specs, env));
+        assertFalse(matcher.isFor(specs(specs.get(0).getName(), "master"), env));
+
+        env.put("BRANCH", "origin/test");
+        assertFalse(matcher.isFor(specs, env));
+    }
+}
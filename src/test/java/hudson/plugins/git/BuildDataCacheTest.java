@@ -0,0 +1,111 @@
+package hudson.plugins.git;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.plugins.git.util.BuildData;
+import hudson.scm.NullSCM;
+import hudson.util.OneShotEvent;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.IOException;
+
+public class BuildDataCacheTest extends AbstractGitTestCase {
+
+    /**
+     * Looks up the build data like {@link GitSCM#getBuildData(Run)} did before it had a cache.
+     */
+    private static BuildData scan(GitSCM scm, Run build) {
+        for (; build != null; build = build.getPreviousBuild()) {
+            for (BuildData bd : build.getActions(BuildData.class)) {
+                for (UserRemoteConfig c : scm.getUserRemoteConfigs()) {
+                    if (bd.hasBeenReferenced(c.getUrl())) {
+                        return bd;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private FreeStyleBuild buildWithoutGit(FreeStyleProject project) throws Exception {
+        project.setScm(new NullSCM());
+        return assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+    }
+
+    public void testHit() throws Exception {
+        FreeStyleProject project = setupSimpleProject("master");
+        GitSCM scm = (GitSCM) project.getScm();
+        commit("commitFile1", johnDoe, "Commit number 1");
+        FreeStyleBuild gitBuild = build(project, Result.SUCCESS, "commitFile1");
+        buildWithoutGit(project);
+        FreeStyleBuild last = buildWithoutGit(project);
+
+        BuildData first = scm.getBuildData(last);
+        assertSame(gitBuild.getAction(BuildData.class), first);
+
+        long hits = BuildDataCache.getHitCount();
+        long misses = BuildDataCache.getMissCount();
+        assertSame(first, scm.getBuildData(last));
+        assertSame(first, scm.getBuildData(last.getPreviousBuild()));
+        assertEquals(hits + 2, BuildDataCache.getHitCount());
+        assertEquals(misses, BuildDataCache.getMissCount());
+        assertSame(scan(scm, last), scm.getBuildData(last));
+    }
+
+    public void testLookupThroughRunStillBuilding() throws Exception {
+        FreeStyleProject project = setupSimpleProject("master");
+        GitSCM scm = (GitSCM) project.getScm();
+        commit("commitFile1", johnDoe, "Commit number 1");
+        build(project, Result.SUCCESS, "commitFile1");
+
+        project.setScm(new NullSCM());
+        final OneShotEvent started = new OneShotEvent();
+        final OneShotEvent finish = new OneShotEvent();
+        project.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                started.signal();
+                finish.block();
+                return true;
+            }
+        });
+        QueueTaskFuture<FreeStyleBuild> future = project.scheduleBuild2(0);
+        started.block();
+        FreeStyleBuild running = future.waitForStart();
+        assertTrue(running.isBuilding());
+
+        assertSame(scan(scm, running), scm.getBuildData(running));
+
+        // the running build records build data after the first lookup
+        BuildData recorded = new BuildData(scm.getScmName(), scm.getUserRemoteConfigs());
+        running.addAction(recorded);
+        assertSame(recorded, scm.getBuildData(running));
+        assertSame(scan(scm, running), scm.getBuildData(running));
+
+        finish.signal();
+        assertBuildStatus(Result.SUCCESS, future.get());
+        assertSame(recorded, scm.getBuildData(running));
+    }
+
+    public void testInvalidatedWhenBuildIsDeleted() throws Exception {
+        FreeStyleProject project = setupSimpleProject("master");
+        GitSCM scm = (GitSCM) project.getScm();
+        commit("commitFile1", johnDoe, "Commit number 1");
+        FreeStyleBuild firstBuild = build(project, Result.SUCCESS, "commitFile1");
+        commit("commitFile2", johnDoe, "Commit number 2");
+        FreeStyleBuild secondBuild = build(project, Result.SUCCESS, "commitFile2");
+        FreeStyleBuild last = buildWithoutGit(project);
+
+        assertSame(secondBuild.getAction(BuildData.class), scm.getBuildData(last));
+
+        secondBuild.delete();
+        assertSame(firstBuild.getAction(BuildData.class), scm.getBuildData(last));
+        assertSame(scan(scm, last), scm.getBuildData(last));
+    }
+}
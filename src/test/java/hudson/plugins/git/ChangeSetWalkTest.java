@@ -0,0 +1,111 @@
+package hudson.plugins.git;
+
+import hudson.Util;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ChangeSetWalkTest extends AbstractGitTestCase {
+
+    private List<GitChangeSet> walk(ObjectId from, ObjectId to) throws Exception {
+        List<GitChangeSet> changeSets = new ArrayList<GitChangeSet>();
+        ChangeSetWalk walk = new ChangeSetWalk(git, from, to, false, null);
+        for (GitChangeSet changeSet = walk.next(); changeSet != null; changeSet = walk.next()) {
+            changeSets.add(changeSet);
+        }
+        return changeSets;
+    }
+
+    private List<GitChangeSet> showRevision(ObjectId from, ObjectId to) throws Exception {
+        List<String> lines = from == null ? git.showRevision(to) : git.showRevision(from, to);
+        return new GitChangeLogParser(false).parse(lines);
+    }
+
+    private void assertSameChangeSets(List<GitChangeSet> expected, List<GitChangeSet> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getAuthorName(), actual.get(i).getAuthorName());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getComment(), actual.get(i).getComment());
+            assertEquals(expected.get(i).getAffectedPaths(), actual.get(i).getAffectedPaths());
+            assertEquals(edits(expected.get(i)), edits(actual.get(i)));
+        }
+    }
+
+    private static List<String> edits(GitChangeSet changeSet) {
+        List<String> edits = new ArrayList<String>();
+        for (GitChangeSet.Path path : changeSet.getPaths()) {
+            edits.add(path.getEditType().getName() + " " + path.getPath() + " " + path.getSrc() + " " + path.getDst());
+        }
+        Collections.sort(edits);
+        return edits;
+    }
+
+    public void testAgreesWithShowRevision() throws Exception {
+        commit("first", johnDoe, "first commit");
+        ObjectId first = git.revParse("HEAD");
+        commit("dir/second", janeDoe, "second commit\n\nwith a description");
+        commit("dir/third", johnDoe, janeDoe, "third commit");
+        commit("first", "changed", johnDoe, "fourth commit");
+        ObjectId fourth = git.revParse("HEAD");
+
+        assertSameChangeSets(showRevision(null, first), walk(null, first));
+        assertSameChangeSets(showRevision(null, fourth), walk(null, fourth));
+        // more commits than fit in the first batch
+        List<GitChangeSet> range = walk(first, fourth);
+        assertEquals(3, range.size());
+        assertSameChangeSets(showRevision(first, fourth), range);
+        assertTrue(walk(fourth, first).isEmpty());
+    }
+
+    public void testRenamesAndTypeChanges() throws Exception {
+        commit("first", "some content\nthat git can tell\nwas renamed\n", johnDoe, "first commit");
+        commit("link", "not a link yet", johnDoe, "second commit");
+        ObjectId second = git.revParse("HEAD");
+
+        workspace.child("first").renameTo(workspace.child("renamed"));
+        git.add("first");
+        git.add("renamed");
+        git.commit("rename");
+        workspace.child("link").delete();
+        Util.createSymlink(workDir, "renamed", "link", listener);
+        git.add("link");
+        git.commit("type change");
+        ObjectId fourth = git.revParse("HEAD");
+
+        List<GitChangeSet> range = walk(second, fourth);
+        List<GitChangeSet> expected = showRevision(second, fourth);
+        assertEquals(2, range.size());
+        assertSameChangeSets(expected.subList(0, 1), range.subList(0, 1));
+        // the same paths as git log -M, only without the blob of the other side of the rename
+        assertEquals(expected.get(1).getId(), range.get(1).getId());
+        assertEquals(paths(expected.get(1)), paths(range.get(1)));
+        assertEquals("[delete first, add renamed]", paths(range.get(1)));
+        assertEquals("[edit link]", paths(range.get(0)));
+    }
+
+    public void testManyBatches() throws Exception {
+        commit("first", johnDoe, "first commit");
+        ObjectId first = git.revParse("HEAD");
+        for (int i = 0; i < 20; i++) {
+            commit("file" + i, johnDoe, "commit " + i);
+        }
+        ObjectId last = git.revParse("HEAD");
+
+        List<GitChangeSet> range = walk(first, last);
+        assertEquals(20, range.size());
+        assertSameChangeSets(showRevision(first, last), range);
+    }
+
+    private static String paths(GitChangeSet changeSet) {
+        List<String> paths = new ArrayList<String>();
+        for (GitChangeSet.Path path : changeSet.getPaths()) {
+            paths.add(path.getEditType().getName() + " " + path.getPath());
+        }
+        return paths.toString();
+    }
+}
@@ -2,9 +2,12 @@ package hudson.plugins.git;
 
 import hudson.Functions;
 import hudson.model.Run;
+import hudson.scm.EditType;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jvnet.hudson.test.HudsonTestCase;
 
@@ -51,4 +54,211 @@ public class GitChangeLogParserTest extends HudsonTestCase {
         assertEquals("first message", first.getMsg());
         assertTrue("Temp file delete failed for " + log, log.delete());
     }
+
+    /**
+     * Test that a commit listed again after other commits is only kept the first time, in the original order.
+     *
+     * @throws Exception
+     */
+    public void testDuplicatesFilteredKeepOrder() throws Exception {
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        File log = File.createTempFile(getClass().getName(), ".tmp");
+        FileWriter writer = new FileWriter(log);
+        writer.write("commit 1234567890123456789012345678901234567890\n");
+        writer.write("    first message\n");
+        writer.write("\n");
+        writer.write(":100644 100644 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb M\tsrc/first.txt\n");
+        writer.write("commit abcdefabcdefabcdefabcdefabcdefabcdefabcd\n");
+        writer.write("    other message\n");
+        writer.write("commit 1234567890123456789012345678901234567890\n");
+        writer.write("    first message again\n");
+        writer.write(":100644 100644 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb M\tsrc/second.txt\n");
+        writer.close();
+        GitChangeSetList list = parser.parse((Run) null, null, log);
+        assertEquals(2, list.getLogs().size());
+        GitChangeSet first = list.getLogs().get(0);
+        assertEquals("1234567890123456789012345678901234567890", first.getId());
+        assertEquals("first message", first.getMsg());
+        assertEquals(1, first.getAffectedPaths().size());
+        assertTrue(first.getAffectedPaths().contains("src/first.txt"));
+        assertEquals("abcdefabcdefabcdefabcdefabcdefabcdefabcd", list.getLogs().get(1).getId());
+        assertTrue("Temp file delete failed for " + log, log.delete());
+    }
+
+    /**
+     * Test that an indexed changelog gives the same change sets as a fully parsed one.
+     *
+     * @throws Exception
+     */
+    public void testIndexedChangelog() throws Exception {
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        File log = File.createTempFile(getClass().getName(), ".tmp");
+        FileWriter writer = new FileWriter(log);
+        writer.write("commit 1234567890123456789012345678901234567890\n");
+        writer.write("    newest message\n");
+        writer.write("commit 123abc456def\n");
+        writer.write("    older message\n");
+        writer.write(":100644 100644 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb M\tsrc/older.txt\n");
+        writer.write("commit 1234567890123456789012345678901234567890\n");
+        writer.write("    duplicate message\n");
+        writer.write("commit abcdefabcdefabcdefabcdefabcdefabcdefabcd\n");
+        writer.write("    oldest message");
+        writer.close();
+        GitChangeSetList full = parser.parse((Run) null, null, log);
+
+        GitChangeLogIndex.write(log);
+        File index = GitChangeLogIndex.getIndexFile(log);
+        GitChangeSetList indexed = parser.parse((Run) null, null, log);
+        assertEquals(3, indexed.size());
+        assertFalse(indexed.isEmptySet());
+        assertEquals(full.getLogs().size(), indexed.getLogs().size());
+        for (int i = 0; i < full.getLogs().size(); i++) {
+            assertEquals(full.getLogs().get(i).getId(), indexed.getLogs().get(i).getId());
+            assertEquals(full.getLogs().get(i).getComment(), indexed.getLogs().get(i).getComment());
+            assertEquals(full.getLogs().get(i).getAffectedPaths(), indexed.getLogs().get(i).getAffectedPaths());
+        }
+        assertSame(indexed, indexed.getLogs().get(0).getParent());
+
+        List<GitChangeSet> page = indexed.getLogs(1, 5);
+        assertEquals(2, page.size());
+        assertEquals("123abc456def", page.get(0).getId());
+        assertTrue(indexed.getLogs(3, 5).isEmpty());
+
+        // an index that does not match the changelog is ignored
+        writer = new FileWriter(log, true);
+        writer.write("\ncommit 0000000000000000000000000000000000000001\n");
+        writer.close();
+        assertEquals(4, parser.parse((Run) null, null, log).getLogs().size());
+
+        assertTrue("Temp file delete failed for " + index, index.delete());
+        assertTrue("Temp file delete failed for " + log, log.delete());
+    }
+
+    /**
+     * Test that the index splits lines like the parser does, with a carriage return in a commit message.
+     *
+     * @throws Exception
+     */
+    public void testIndexedChangelogWithCarriageReturns() throws Exception {
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        File log = File.createTempFile(getClass().getName(), ".tmp");
+        FileWriter writer = new FileWriter(log);
+        writer.write("commit 1234567890123456789012345678901234567890\r\n");
+        writer.write("    newest message\rcommit abcdefabcdefabcdefabcdefabcdefabcdefabcd\n");
+        writer.write("    message after a carriage return\r\n");
+        writer.write("commit 0000000000000000000000000000000000000001\n");
+        writer.write("    oldest message\r");
+        writer.close();
+        GitChangeSetList full = parser.parse((Run) null, null, log);
+        assertEquals(3, full.getLogs().size());
+
+        GitChangeLogIndex.write(log);
+        File index = GitChangeLogIndex.getIndexFile(log);
+        GitChangeSetList indexed = parser.parse((Run) null, null, log);
+        assertEquals(3, indexed.size());
+        for (int i = 0; i < full.getLogs().size(); i++) {
+            assertEquals(full.getLogs().get(i).getId(), indexed.getLogs().get(i).getId());
+            assertEquals(full.getLogs().get(i).getComment(), indexed.getLogs().get(i).getComment());
+        }
+        assertEquals("abcdefabcdefabcdefabcdefabcdefabcdefabcd", indexed.getLogs().get(1).getId());
+
+        assertTrue("Temp file delete failed for " + index, index.delete());
+        assertTrue("Temp file delete failed for " + log, log.delete());
+    }
+
+    public void testIndexedChangelogReadInBatches() throws Exception {
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        File log = File.createTempFile(getClass().getName(), ".tmp");
+        FileWriter writer = new FileWriter(log);
+        for (int i = 150; i > 0; i--) {
+            writer.write(String.format("commit %040x\n", i));
+            writer.write("    message " + i + "\n");
+        }
+        writer.close();
+        GitChangeLogIndex.write(log);
+        File index = GitChangeLogIndex.getIndexFile(log);
+
+        // from the last changeset backwards, then in order
+        GitChangeSetList indexed = parser.parse((Run) null, null, log);
+        for (int i = indexed.size() - 1; i >= 0; i--) {
+            assertEquals(String.format("%040x", i + 1), indexed.getLogs().get(i).getId());
+        }
+        indexed = parser.parse((Run) null, null, log);
+        int i = 1;
+        for (GitChangeSet changeSet : indexed) {
+            assertEquals(String.format("%040x", i), changeSet.getId());
+            assertEquals("message " + i, changeSet.getComment().trim());
+            assertSame(indexed, changeSet.getParent());
+            i++;
+        }
+        assertEquals(151, i);
+
+        assertTrue("Temp file delete failed for " + index, index.delete());
+        assertTrue("Temp file delete failed for " + log, log.delete());
+    }
+
+    /**
+     * Test that a binary changelog reads back the same as the text it was made from.
+     *
+     * @throws Exception
+     */
+    public void testBinaryChangelog() throws Exception {
+        GitChangeLogParser parser = new GitChangeLogParser(true);
+        File log = File.createTempFile(getClass().getName(), ".tmp");
+        FileWriter writer = new FileWriter(log);
+        writer.write("commit 1234567890123456789012345678901234567890\n");
+        writer.write("tree 4444444444444444444444444444444444444444\n");
+        writer.write("parent abcdefabcdefabcdefabcdefabcdefabcdefabcd\n");
+        writer.write("author John Author <jauthor@nospam.com> 1234568 -0600\n");
+        writer.write("committer John Committer <jcommitter@nospam.com> 1234566 -0600\n");
+        writer.write("\n");
+        writer.write("    first line\n");
+        writer.write("    second line\n");
+        writer.write("\n");
+        writer.write(":100644 100644 aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb M\tsrc/modified.txt\n");
+        writer.write(":000000 100644 0000000000000000000000000000000000000000 cccccccccccccccccccccccccccccccccccccccc A\tsrc/added.txt\n");
+        writer.write(":100644 100644 dddddddddddddddddddddddddddddddddddddddd eeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeee R100\told.txt\tsrc/new.txt\n");
+        writer.write("commit 123abc456def\n");
+        writer.write("author John Author <jauthor@nospam.com> 1234569 -0600\n");
+        writer.write("    short id\n");
+        writer.close();
+        List<GitChangeSet> text = parser.parse((Run) null, null, log).getLogs();
+
+        BinaryChangeLog.write(log, new ArrayList<GitChangeSet>(text));
+        assertTrue(BinaryChangeLog.isBinary(log));
+        List<GitChangeSet> binary = parser.parse((Run) null, null, log).getLogs();
+
+        assertEquals(text.size(), binary.size());
+        for (int i = 0; i < text.size(); i++) {
+            GitChangeSet expected = text.get(i);
+            GitChangeSet actual = binary.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getParentCommit(), actual.getParentCommit());
+            assertEquals(expected.getAuthorName(), actual.getAuthorName());
+            assertEquals(expected.getDate(), actual.getDate());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getComment(), actual.getComment());
+            assertEquals(expected.getMsg(), actual.getMsg());
+            assertEquals(expected.getAffectedPaths(), actual.getAffectedPaths());
+            assertEquals(expected.getPaths().size(), actual.getPaths().size());
+            for (GitChangeSet.Path path : actual.getPaths()) {
+                assertSame(actual, path.getChangeSet());
+                if (path.getPath().equals("src/added.txt")) {
+                    assertNull(path.getSrc());
+                    assertEquals("cccccccccccccccccccccccccccccccccccccccc", path.getDst());
+                    assertEquals(EditType.ADD, path.getEditType());
+                }
+            }
+        }
+
+        // pages are read from the table of the changelog
+        GitChangeSetList paged = parser.parse((Run) null, null, log);
+        assertEquals(2, paged.size());
+        List<GitChangeSet> page = paged.getLogs(1, 5);
+        assertEquals(1, page.size());
+        assertEquals(text.get(1).getId(), page.get(0).getId());
+        assertSame(paged, page.get(0).getParent());
+        assertTrue(paged.getLogs(2, 5).isEmpty());
+        assertTrue("Temp file delete failed for " + log, log.delete());
+    }
 }
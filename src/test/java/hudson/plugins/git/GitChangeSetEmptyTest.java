@@ -22,6 +22,11 @@ public class GitChangeSetEmptyTest {
         assertNull(changeSet.getDate());
     }
 
+    @Test
+    public void testGetTimestamp() {
+        assertEquals(-1L, changeSet.getTimestamp());
+    }
+
     @Test
     public void testGetCommitId() {
         assertNull(changeSet.getCommitId());
@@ -1,6 +1,7 @@
 package hudson.plugins.git;
 
 import hudson.scm.EditType;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -11,6 +12,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -87,6 +89,7 @@ public class GitChangeSetSimpleTest {
         expectedAffectedPaths.add("src/test/renamedTo.file");
         expectedAffectedPaths.add("src/test/copyOf.file");
         assertEquals(expectedAffectedPaths, changeSet.getAffectedPaths());
+        assertSame(changeSet.getAffectedPaths(), changeSet.getAffectedPaths());
 
         Collection<GitChangeSet.Path> actualPaths = changeSet.getPaths();
         assertEquals(6, actualPaths.size());
@@ -126,6 +129,14 @@ public class GitChangeSetSimpleTest {
         assertEquals(useAuthorName ? 1234568000L : 1234566000L, changeSet.getTimestamp());
     }
 
+    @Test
+    public void testGetDate() throws Exception {
+        String date = changeSet.getDate();
+        assertTrue(date, date.endsWith(" -0600"));
+        assertEquals(changeSet.getTimestamp(), new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").parse(date).getTime());
+        assertSame(date, changeSet.getDate());
+    }
+
     @Test
     public void testGetCommitId() {
         assertEquals(id, changeSet.getCommitId());
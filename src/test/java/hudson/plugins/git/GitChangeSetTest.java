@@ -146,6 +146,27 @@ public class GitChangeSetTest extends HudsonTestCase {
         assertEquals(User.getUnknown(), committerCS.findOrCreateUser(null, csAuthorEmail, true));
     }
 
+    public void testGetAuthorSharedAmongChangeSets() {
+        GitChangeSet first = genChangeSet(false, false);
+        GitChangeSet second = genChangeSet(false, true);
+
+        assertSame(first.getAuthorName(), second.getAuthorName());
+        User user = first.getAuthor();
+        assertEquals("John Committer", user.getFullName());
+        assertSame(user, first.getAuthor());
+        assertSame(user, second.getAuthor());
+        assertNotSame(user, genChangeSet(true, false).getAuthor());
+    }
+
+    public void testSavingUserForgetsCachedUsers() throws Exception {
+        User user = genChangeSet(false, false).getAuthor();
+        UserCache.put("Cached Person", "cached@example.com", false, user);
+        assertSame(user, UserCache.get("Cached Person", "cached@example.com", false));
+
+        user.save();
+        assertNull(UserCache.get("Cached Person", "cached@example.com", false));
+    }
+
     private GitChangeSet genChangeSetForSwedCase(boolean authorOrCommitter) {
         ArrayList<String> lines = new ArrayList<String>();
         lines.add("commit 1567861636cd854f4dd6fa40bf94c0c657681dd5");
@@ -701,6 +701,35 @@ public class GitSCMTest extends AbstractGitTestCase {
         assertFalse("scm polling should not detect any more changes after last build", project.poll(listener).hasChanges());
     }
 
+    public void testBranchesLeftUnbuiltAreStillCandidates() throws Exception {
+        final FreeStyleProject project = setupSimpleProject("");
+        final String commitFile1 = "commitFile1";
+        commit(commitFile1, johnDoe, "Commit number 1");
+        build(project, Result.SUCCESS, commitFile1);
+
+        git.branch("first");
+        git.branch("second");
+        git.checkout("first");
+        final String firstFile = "firstFile";
+        commit(firstFile, johnDoe, "First commit");
+        git.checkout("second");
+        final String secondFile = "secondFile";
+        commit(secondFile, johnDoe, "Second commit");
+
+        // one branch is built at a time, the other one has not moved since
+        assertTrue("scm polling should detect changes in both branches", project.poll(listener).hasChanges());
+        build(project, Result.SUCCESS);
+        assertTrue("scm polling should detect the branch not built yet", project.poll(listener).hasChanges());
+        build(project, Result.SUCCESS);
+        assertFalse("scm polling should not detect any more changes after last build", project.poll(listener).hasChanges());
+
+        // a branch moved to a commit already built is not built again
+        git.checkout("first");
+        git.deleteBranch("second");
+        git.branch("second");
+        assertFalse("scm polling should not detect a branch moved to a built commit", project.poll(listener).hasChanges());
+    }
+
     @Bug(19037)
     @SuppressWarnings("ResultOfObjectAllocationIgnored")
     public void testBlankRepositoryName() throws Exception {
@@ -868,6 +897,139 @@ public class GitSCMTest extends AbstractGitTestCase {
         assertFalse("scm polling should not detect any more changes after build", project.poll(listener).hasChanges());
     }
 
+    public void testParallelFetchFromMultipleRepositories() throws Exception {
+        FreeStyleProject project = setupSimpleProject("master");
+
+        TestGitRepo secondTestRepo = new TestGitRepo("second", this, listener);
+        TestGitRepo thirdTestRepo = new TestGitRepo("third", this, listener);
+        List<UserRemoteConfig> remotes = new ArrayList<UserRemoteConfig>();
+        remotes.addAll(testRepo.remoteConfigs());
+        remotes.addAll(secondTestRepo.remoteConfigs());
+        remotes.addAll(thirdTestRepo.remoteConfigs());
+
+        project.setScm(new GitSCM(
+                remotes,
+                Collections.singletonList(new BranchSpec("master")),
+                false, Collections.<SubmoduleConfig>emptyList(),
+                null, null,
+                Collections.<GitSCMExtension>singletonList(new ParallelFetch())));
+
+        final String commitFile1 = "commitFile1";
+        commit(commitFile1, johnDoe, "Commit number 1");
+        build(project, Result.SUCCESS, commitFile1);
+
+        final String commitFile2 = "commitFile2";
+        thirdTestRepo.commit(commitFile2, janeDoe, "Commit number 2");
+        assertTrue("scm polling did not detect commit2 change", project.poll(listener).hasChanges());
+        final FreeStyleBuild build2 = build(project, Result.SUCCESS, commitFile2);
+        assertTrue(build2.getWorkspace().child(commitFile2).exists());
+        assertFalse("scm polling should not detect any more changes after build", project.poll(listener).hasChanges());
+    }
+
+    public void testParallelFetchWithPruneOrShallowClone() throws Exception {
+        TestGitRepo secondTestRepo = new TestGitRepo("second", this, listener);
+        List<UserRemoteConfig> remotes = new ArrayList<UserRemoteConfig>();
+        remotes.addAll(testRepo.remoteConfigs());
+        remotes.addAll(secondTestRepo.remoteConfigs());
+        final String commitFile1 = "commitFile1";
+        commit(commitFile1, johnDoe, "Commit number 1");
+        secondTestRepo.commit("secondFile1", janeDoe, "Second commit number 1");
+
+        List<List<GitSCMExtension>> combinations = new ArrayList<List<GitSCMExtension>>();
+        combinations.add(Arrays.<GitSCMExtension>asList(new ParallelFetch(), new PruneStaleBranch()));
+        combinations.add(Arrays.<GitSCMExtension>asList(new ParallelFetch(), new CloneOption(true, null, null)));
+        for (List<GitSCMExtension> extensions : combinations) {
+            FreeStyleProject project = createFreeStyleProject();
+            project.setScm(new GitSCM(
+                    remotes,
+                    Collections.singletonList(new BranchSpec("master")),
+                    false, Collections.<SubmoduleConfig>emptyList(),
+                    null, null,
+                    extensions));
+            FreeStyleBuild build1 = build(project, Result.SUCCESS, commitFile1);
+            assertTrue(build1.getLog(50).contains("one after the other"));
+
+            final String commitFile2 = "commitFile2-" + project.getName();
+            commit(commitFile2, johnDoe, "Commit number 2");
+            FreeStyleBuild build2 = build(project, Result.SUCCESS, commitFile2);
+            assertTrue(build2.getWorkspace().child(commitFile2).exists());
+        }
+    }
+
+    public void testMirrorCache() throws Exception {
+        FreeStyleProject project = setupSimpleProject("master");
+        ((GitSCM) project.getScm()).getExtensions().add(new MirrorCache());
+
+        final String commitFile1 = "commitFile1";
+        commit(commitFile1, johnDoe, "Commit number 1");
+        final FreeStyleBuild build1 = build(project, Result.SUCCESS, commitFile1);
+
+        File[] mirrors = new File(jenkins.getRootDir(), "caches").listFiles();
+        assertEquals(1, mirrors.length);
+        assertTrue(mirrors[0].getName().startsWith("git-mirror-"));
+        String alternates = build1.getWorkspace().child(".git/objects/info/alternates").readToString();
+        assertTrue(alternates, alternates.contains(new File(mirrors[0], ".git/objects").getPath()));
+
+        final String commitFile2 = "commitFile2";
+        commit(commitFile2, janeDoe, "Commit number 2");
+        final FreeStyleBuild build2 = build(project, Result.SUCCESS, commitFile2);
+        assertTrue(build2.getWorkspace().child(commitFile2).exists());
+        assertEquals(1, new File(jenkins.getRootDir(), "caches").listFiles().length);
+    }
+
+    public void testMirrorCacheEvictsLeastRecentlyUsedMirror() throws Exception {
+        TestGitRepo secondTestRepo = new TestGitRepo("second", this, listener);
+        FreeStyleBuild build1 = buildWithMirrors(testRepo);
+        buildWithMirrors(secondTestRepo);
+        File caches = new File(jenkins.getRootDir(), "caches");
+        assertEquals(2, caches.listFiles().length);
+
+        NodeMirror mirror = NodeMirror.of(jenkins, secondTestRepo.gitDir.getAbsolutePath());
+        mirror.evict("git", listener, 1, 0);
+
+        File[] mirrors = caches.listFiles();
+        assertEquals(1, mirrors.length);
+        assertEquals(mirror.getEntry(), mirrors[0].getName());
+        // the workspace that borrowed from the deleted mirror has its own copy of the objects
+        FilePath alternates = build1.getWorkspace().child(".git/objects/info/alternates");
+        assertFalse(alternates.exists() && alternates.readToString().contains("git-mirror-"));
+        assertTrue(Git.with(listener, new EnvVars()).in(build1.getWorkspace()).getClient().withRepository(new HasHead()));
+    }
+
+    public void testMirrorCacheKeepsMirrorStillBorrowedFrom() throws Exception {
+        TestGitRepo secondTestRepo = new TestGitRepo("second", this, listener);
+        FreeStyleBuild build1 = buildWithMirrors(testRepo);
+        buildWithMirrors(secondTestRepo);
+        File caches = new File(jenkins.getRootDir(), "caches");
+
+        // the workspace cannot be repacked without git, so it keeps borrowing from its mirror
+        NodeMirror.of(jenkins, secondTestRepo.gitDir.getAbsolutePath()).evict("no-such-git", listener, 1, 0);
+
+        assertEquals(2, caches.listFiles().length);
+        String alternates = build1.getWorkspace().child(".git/objects/info/alternates").readToString();
+        assertTrue(alternates, alternates.contains("git-mirror-"));
+        assertTrue(Git.with(listener, new EnvVars()).in(build1.getWorkspace()).getClient().withRepository(new HasHead()));
+    }
+
+    private FreeStyleBuild buildWithMirrors(TestGitRepo repo) throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        project.setScm(new GitSCM(
+                repo.remoteConfigs(),
+                Collections.singletonList(new BranchSpec("master")),
+                false, Collections.<SubmoduleConfig>emptyList(),
+                null, null,
+                Collections.<GitSCMExtension>singletonList(new MirrorCache())));
+        final String commitFile = "commitFile-" + repo.name;
+        repo.commit(commitFile, johnDoe, "Commit to " + repo.name);
+        return build(project, Result.SUCCESS, commitFile);
+    }
+
+    private static class HasHead implements RepositoryCallback<Boolean> {
+        public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            return repo.hasObject(repo.resolve(Constants.HEAD));
+        }
+    }
+
     @Bug(25639)
     public void testCommitDetectedOnlyOnceInMultipleRepositories() throws Exception {
         FreeStyleProject project = setupSimpleProject("master");
@@ -1479,6 +1641,100 @@ public class GitSCMTest extends AbstractGitTestCase {
 		assertFalse(pollingResult.hasChanges());
 	}
 
+    public void testPolling_ExclusionsDoNotNeedWorkspace() throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        GitSCM scm = new GitSCM(createRemoteRepositories(),
+                Collections.singletonList(new BranchSpec("master")), false,
+                Collections.<SubmoduleConfig> emptyList(), null, null,
+                Collections.<GitSCMExtension> emptyList());
+        scm.getExtensions().add(new PathRestriction(null, "docs/.*"));
+        scm.getExtensions().add(new UserExclusion("Jane Doe"));
+        project.setScm(scm);
+        assertTrue(scm.requiresWorkspaceForPolling());
+        scm.getExtensions().add(new MirrorPoll());
+        assertFalse(scm.requiresWorkspaceForPolling());
+        commit("commitFile1", johnDoe, "Commit number 1");
+
+        FreeStyleBuild first_build = project.scheduleBuild2(0, new Cause.UserCause()).get();
+        assertBuildStatus(Result.SUCCESS, first_build);
+        first_build.getWorkspace().deleteRecursive();
+
+        commit("docs/index.html", johnDoe, "Commit number 2");
+        commit("commitFile3", janeDoe, "Commit number 3");
+        assertFalse("excluded commits should not trigger a build", project.poll(listener).hasChanges());
+
+        commit("commitFile4", johnDoe, "Commit number 4");
+        assertTrue("polling did not detect commit4 change", project.poll(listener).hasChanges());
+        assertFalse(first_build.getWorkspace().exists());
+        File[] mirrors = new File(jenkins.getRootDir(), "caches").listFiles();
+        assertEquals(1, mirrors.length);
+        String config = FileUtils.readFileToString(new File(mirrors[0], ".git/config"));
+        assertTrue(config, config.contains("bare = true"));
+    }
+
+    public void testPollingMirrorEvictsLeastRecentlyUsed() throws Exception {
+        File caches = new File(jenkins.getRootDir(), "caches");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            File dir = new File(caches, "git-polling-" + i);
+            assertTrue(dir.mkdirs());
+            dir.setLastModified(now - (3 - i) * 60000L);
+        }
+        // the oldest is being polled, so the next oldest goes
+        PollingMirror.getLock("git-polling-0").lock();
+        try {
+            PollingMirror.evict("git-polling-2", listener, 2, 0);
+        } finally {
+            PollingMirror.getLock("git-polling-0").unlock();
+        }
+        assertTrue(new File(caches, "git-polling-0").exists());
+        assertFalse(new File(caches, "git-polling-1").exists());
+        assertTrue(new File(caches, "git-polling-2").exists());
+    }
+
+    public void testPolling_RemoteBranchesWithoutWorkspace() throws Exception {
+        FreeStyleProject project = setupSimpleProject("");
+        GitSCM scm = (GitSCM) project.getScm();
+        assertTrue("wildcard specs should poll in the workspace by default", scm.requiresWorkspaceForPolling());
+        scm.getExtensions().add(new RemoteBranchesPoll());
+        assertFalse(scm.requiresWorkspaceForPolling());
+
+        commit("commitFile1", johnDoe, "Commit number 1");
+        FreeStyleBuild first_build = build(project, Result.SUCCESS, "commitFile1");
+        first_build.getWorkspace().deleteRecursive();
+        assertFalse("scm polling should not detect any more changes after last build", project.poll(listener).hasChanges());
+
+        git.branch("feature");
+        assertFalse("a new branch at a built commit should not trigger a build", project.poll(listener).hasChanges());
+        git.checkout("feature");
+        commit("commitFile2", johnDoe, "Commit number 2");
+        assertTrue("scm polling should detect the new commit on 'feature'", project.poll(listener).hasChanges());
+        assertFalse(first_build.getWorkspace().exists());
+    }
+
+    public void testPolling_RemoteBranchesIgnoreBranchesTheBuildSkipped() throws Exception {
+        FreeStyleProject project = setupSimpleProject("");
+        ((GitSCM) project.getScm()).getExtensions().add(new RemoteBranchesPoll());
+        commit("commitFile1", johnDoe, "Commit number 1");
+        commit("commitFile2", johnDoe, "Commit number 2");
+        git.branch("old");
+        commit("commitFile3", johnDoe, "Commit number 3");
+
+        // 'old' is an ancestor of 'master', so the build chooser does not build it
+        FreeStyleBuild build = build(project, Result.SUCCESS, "commitFile1", "commitFile2", "commitFile3");
+        RemoteBranchesRevisionState state = build.getAction(RemoteBranchesRevisionState.class);
+        assertNotNull("the build should record the branches it did not build", state);
+        assertEquals(Collections.singleton("origin/old"), state.getUnbuiltBranches().keySet());
+        assertTrue(state.isKnown("origin/old", git.revParse("old")));
+        assertFalse(state.isKnown("origin/old", git.revParse("master")));
+        assertFalse(state.isKnown("origin/master", git.revParse("master")));
+        assertFalse("a branch the build skipped should not trigger a build", project.poll(listener).hasChanges());
+
+        git.checkout("old");
+        commit("commitFile4", johnDoe, "Commit number 4");
+        assertTrue("scm polling should detect the new commit on 'old'", project.poll(listener).hasChanges());
+    }
+
     /**
      * Test for JENKINS-24467.
      *
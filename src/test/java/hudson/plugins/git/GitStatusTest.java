@@ -11,12 +11,18 @@ import hudson.plugins.git.extensions.impl.IgnoreNotifyCommit;
 import hudson.plugins.git.util.DefaultBuildChooser;
 import hudson.triggers.SCMTrigger;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jgit.transport.URIish;
 import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestExtension;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerResponse;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -141,6 +147,139 @@ public class GitStatusTest extends HudsonTestCase {
         // no expectation here, however we shouldn't have a build triggered, and no exception
     }
 
+    public void testDoNotifyCommitFollowsConfigurationChanges() throws Exception {
+        FreeStyleProject project = createFreeStyleProject();
+        project.setScm(createSCM("a", "master"));
+        SCMTrigger aMasterTrigger = Mockito.mock(SCMTrigger.class);
+        project.addTrigger(aMasterTrigger);
+        this.gitStatus.doNotifyCommit("a", "master", null);
+        Mockito.verify(aMasterTrigger).run();
+
+        project.setScm(createSCM("b", "master"));
+        this.gitStatus.doNotifyCommit("a", "master", null);
+        this.gitStatus.doNotifyCommit("b", "master", null);
+        Mockito.verify(aMasterTrigger, Mockito.times(2)).run();
+
+        project.renameTo("renamed");
+        this.gitStatus.doNotifyCommit("b", "master", null);
+        Mockito.verify(aMasterTrigger, Mockito.times(3)).run();
+
+        SCMTrigger cMasterTrigger = setupProject("c", "master", false);
+        project.delete();
+        this.gitStatus.doNotifyCommit("b", "master", null);
+        this.gitStatus.doNotifyCommit("c", "master", null);
+        Mockito.verify(aMasterTrigger, Mockito.times(3)).run();
+        Mockito.verify(cMasterTrigger).run();
+    }
+
+    public void testDoNotifyCommitAsyncIsAccepted() throws Exception {
+        async(1000, 100);
+        SCMTrigger aMasterTrigger = setupProject("a", "master", false);
+        SCMTrigger bMasterTrigger = setupProject("b", "master", false);
+
+        assertStatus(HttpServletResponse.SC_ACCEPTED, this.gitStatus.doNotifyCommit("a", "master", null));
+        Mockito.verify(aMasterTrigger, Mockito.timeout(10000)).run();
+        Mockito.verify(bMasterTrigger, Mockito.never()).run();
+    }
+
+    public void testDoNotifyCommitAsyncIsRejectedWhenQueueIsFull() throws Exception {
+        NotifyCommitQueue queue = async(0, 100);
+        SCMTrigger aMasterTrigger = setupProject("a", "master", false);
+
+        long rejected = queue.getRejectedCount();
+        assertStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.gitStatus.doNotifyCommit("a", "master", null));
+        assertEquals(rejected + 1, queue.getRejectedCount());
+        Thread.sleep(500);
+        Mockito.verify(aMasterTrigger, Mockito.never()).run();
+    }
+
+    public void testDoNotifyCommitAsyncDebouncesIdenticalNotifications() throws Exception {
+        NotifyCommitQueue queue = async(1000, 1000);
+        SCMTrigger aMasterTrigger = setupProject("a", "master", false);
+
+        long coalesced = queue.getCoalescedCount();
+        assertStatus(HttpServletResponse.SC_ACCEPTED, this.gitStatus.doNotifyCommit("a", "master", null));
+        assertStatus(HttpServletResponse.SC_ACCEPTED, this.gitStatus.doNotifyCommit("a", "master", null));
+        assertStatus(HttpServletResponse.SC_ACCEPTED, this.gitStatus.doNotifyCommit("a", "master", null));
+        assertEquals(coalesced + 2, queue.getCoalescedCount());
+
+        Mockito.verify(aMasterTrigger, Mockito.timeout(10000)).run();
+        Thread.sleep(2000);
+        Mockito.verify(aMasterTrigger, Mockito.times(1)).run();
+    }
+
+    public void testDoNotifyCommitAsyncNotifiesListenersOncePerKey() throws Exception {
+        NotifyCommitQueue queue = async(1000, 500);
+        SCMTrigger aMasterTrigger = setupProject("a", "master", false);
+        SCMTrigger aTopicTrigger = setupProject("a", "topic", false);
+        SCMTrigger bMasterTrigger = setupProject("b", "master", false);
+
+        long processed = queue.getProcessedCount();
+        this.gitStatus.doNotifyCommit("a", "master", null);
+        this.gitStatus.doNotifyCommit("a", "topic", null);
+        this.gitStatus.doNotifyCommit("b", "master", null);
+        this.gitStatus.doNotifyCommit("a", "master", null);
+        this.gitStatus.doNotifyCommit("b", "master", null);
+
+        Mockito.verify(aMasterTrigger, Mockito.timeout(10000)).run();
+        Mockito.verify(aTopicTrigger, Mockito.timeout(10000)).run();
+        Mockito.verify(bMasterTrigger, Mockito.timeout(10000)).run();
+        Thread.sleep(1500);
+        Mockito.verify(aMasterTrigger, Mockito.times(1)).run();
+        Mockito.verify(aTopicTrigger, Mockito.times(1)).run();
+        Mockito.verify(bMasterTrigger, Mockito.times(1)).run();
+        assertEquals(processed + 3, queue.getProcessedCount());
+
+        // once processed, the same notification is handled again
+        this.gitStatus.doNotifyCommit("a", "master", null);
+        Mockito.verify(aMasterTrigger, Mockito.timeout(10000).times(2)).run();
+    }
+
+    public void testDoNotifyCommitAsyncCoalescesCommitsToSameBranch() throws Exception {
+        NotifyCommitQueue queue = async(1000, 1000);
+        SHA1Listener listener = jenkins.getExtensionList(GitStatus.Listener.class).get(SHA1Listener.class);
+
+        long coalesced = queue.getCoalescedCount();
+        this.gitStatus.doNotifyCommit("a", "master", "1111111111111111111111111111111111111111");
+        this.gitStatus.doNotifyCommit("a", "master", "2222222222222222222222222222222222222222");
+        this.gitStatus.doNotifyCommit("a", "master", "3333333333333333333333333333333333333333");
+        assertEquals(coalesced + 2, queue.getCoalescedCount());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (listener.sha1s.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(1500);
+        assertEquals(Collections.singletonList("3333333333333333333333333333333333333333"), listener.sha1s);
+    }
+
+    @TestExtension("testDoNotifyCommitAsyncCoalescesCommitsToSameBranch")
+    public static class SHA1Listener extends GitStatus.Listener {
+        final List<String> sha1s = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public List<GitStatus.ResponseContributor> onNotifyCommit(URIish uri, String sha1, String... branches) {
+            sha1s.add(sha1);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Has notifications processed asynchronously by a new queue.
+     */
+    private NotifyCommitQueue async(int capacity, int debounceMillis) {
+        NotifyCommitQueue queue = new NotifyCommitQueue(capacity, debounceMillis);
+        this.gitStatus = new GitStatus(queue);
+        return queue;
+    }
+
+    private void assertStatus(int expected, HttpResponse response) throws Exception {
+        StaplerResponse rsp = Mockito.mock(StaplerResponse.class);
+        Mockito.when(rsp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        response.generateResponse(null, rsp, null);
+        Mockito.verify(rsp).setStatus(expected);
+    }
+
     private SCMTrigger setupProject(String url, String branchString, boolean ignoreNotifyCommit) throws Exception {
         SCMTrigger trigger = Mockito.mock(SCMTrigger.class);
         Mockito.doReturn(ignoreNotifyCommit).when(trigger).isIgnorePostCommitHooks();
@@ -150,14 +289,17 @@ public class GitStatusTest extends HudsonTestCase {
 
     private void setupProject(String url, String branchString, SCMTrigger trigger) throws Exception {
         FreeStyleProject project = createFreeStyleProject();
-        GitSCM git = new GitSCM(
+        project.setScm(createSCM(url, branchString));
+        if (trigger != null) project.addTrigger(trigger);
+    }
+
+    private GitSCM createSCM(String url, String branchString) {
+        return new GitSCM(
                 Collections.singletonList(new UserRemoteConfig(url, null, null, null)),
                 Collections.singletonList(new BranchSpec(branchString)),
                 false, Collections.<SubmoduleConfig>emptyList(),
                 null, null,
                 Collections.<GitSCMExtension>emptyList());
-        project.setScm(git);
-        if (trigger != null) project.addTrigger(trigger);
     }
 
 
@@ -0,0 +1,100 @@
+package hudson.plugins.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RemoteRefSnapshotServiceTest extends HudsonTestCase {
+
+    private static final Map<String, ObjectId> HEADS =
+            Collections.singletonMap("refs/heads/master", ObjectId.fromString("0123456789012345678901234567890123456789"));
+
+    /**
+     * Each test uses its own repository, as snapshots outlive the tests.
+     */
+    private String url() {
+        return "https://example.com/" + getName() + ".git";
+    }
+
+    private GitClient client(String url) throws Exception {
+        GitClient git = Mockito.mock(GitClient.class);
+        Mockito.when(git.getHeadRev(url)).thenReturn(HEADS);
+        return git;
+    }
+
+    public void testPollsWithinWindowShareOneListing() throws Exception {
+        String url = url();
+        GitClient git = client(url);
+
+        assertEquals(HEADS, RemoteRefSnapshotService.getHeads(git, url, null));
+        assertEquals(HEADS, RemoteRefSnapshotService.getHeads(git, url, null));
+        Mockito.verify(git, Mockito.times(1)).getHeadRev(url);
+    }
+
+    public void testConcurrentPollsWaitForTheListingInFlight() throws Exception {
+        final String url = url();
+        final GitClient git = Mockito.mock(GitClient.class);
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(git.getHeadRev(url)).thenAnswer(new Answer<Map<String, ObjectId>>() {
+            public Map<String, ObjectId> answer(InvocationOnMock invocation) throws Throwable {
+                listing.countDown();
+                release.await();
+                return HEADS;
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Map<String, ObjectId>> poll = new Callable<Map<String, ObjectId>>() {
+                public Map<String, ObjectId> call() throws Exception {
+                    return RemoteRefSnapshotService.getHeads(git, url, null);
+                }
+            };
+            Future<Map<String, ObjectId>> first = executor.submit(poll);
+            listing.await();
+            Future<Map<String, ObjectId>> second = executor.submit(poll);
+            Thread.sleep(100);
+            release.countDown();
+            assertEquals(HEADS, first.get());
+            assertEquals(HEADS, second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        Mockito.verify(git, Mockito.times(1)).getHeadRev(url);
+    }
+
+    public void testDifferentCredentialsAreNotShared() throws Exception {
+        String url = url();
+        GitClient alice = client(url);
+        GitClient bob = client(url);
+
+        RemoteRefSnapshotService.getHeads(alice, url, "alice");
+        RemoteRefSnapshotService.getHeads(bob, url, "bob");
+        RemoteRefSnapshotService.getHeads(bob, url, null);
+        Mockito.verify(alice, Mockito.times(1)).getHeadRev(url);
+        Mockito.verify(bob, Mockito.times(2)).getHeadRev(url);
+    }
+
+    public void testNotifyCommitForcesFreshListing() throws Exception {
+        String url = url();
+        GitClient git = client(url);
+
+        RemoteRefSnapshotService.getHeads(git, url, null);
+        // another protocol for the same repository
+        new GitStatus().doNotifyCommit("git://example.com/" + getName() + ".git", null, null);
+        RemoteRefSnapshotService.getHeads(git, url, null);
+        Mockito.verify(git, Mockito.times(2)).getHeadRev(url);
+    }
+}
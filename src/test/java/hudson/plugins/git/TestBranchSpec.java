@@ -146,4 +146,40 @@ public class TestBranchSpec extends TestCase {
     	assertFalse(m.matches("origin/prefix"));
     	assertFalse(m.matches("origin/prefix-abc"));
     }
+
+    public void testPrefixAndSuffixWildcards() {
+        BranchSpec any = new BranchSpec("**/master");
+        assertTrue(any.matches("origin/master"));
+        assertTrue(any.matches("remotes/origin/master"));
+        assertFalse(any.matches("origin/master2"));
+
+        BranchSpec deep = new BranchSpec("origin/release/**");
+        assertTrue(deep.matches("origin/release/1.0"));
+        assertTrue(deep.matches("origin/release/1.x/hotfix"));
+        assertFalse(deep.matches("origin/releases/1.0"));
+
+        BranchSpec shallow = new BranchSpec("origin/feature-*");
+        assertTrue(shallow.matches("origin/feature-"));
+        assertTrue(shallow.matches("origin/feature-x"));
+        assertFalse(shallow.matches("origin/feature-x/y"));
+        assertFalse(shallow.matches("upstream/feature-x"));
+
+        BranchSpec component = new BranchSpec("*/feature/x");
+        assertTrue(component.matches("origin/feature/x"));
+        assertFalse(component.matches("feature/x"));
+        assertFalse(component.matches("remotes/origin/feature/x"));
+    }
+
+    public void testMatcherFollowsEnvironment() {
+        BranchSpec spec = new BranchSpec("${BRANCH}");
+        HashMap<String, String> envMap = new HashMap<String, String>();
+        envMap.put("BRANCH", "master");
+        assertTrue(spec.matches("origin/master", new EnvVars(envMap)));
+        envMap.put("BRANCH", "develop");
+        assertFalse(spec.matches("origin/master", new EnvVars(envMap)));
+        assertTrue(spec.matches("origin/develop", new EnvVars(envMap)));
+
+        spec.setName("origin/*");
+        assertTrue(spec.matches("origin/master"));
+    }
 }
@@ -1,9 +1,18 @@
 package hudson.plugins.git.util;
 
+import hudson.model.Run;
 import hudson.plugins.git.AbstractGitTestCase;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.Revision;
 
 import hudson.plugins.git.util.BuildData;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
 /**
  * @author Mark Waite
  */
@@ -24,4 +33,92 @@ public class BuildDataTest extends AbstractGitTestCase {
         final BuildData data = new BuildData(scmName);
         assertEquals("Git Build Data:" + scmName, data.getDisplayName());
     }
+
+    public void testHasBeenBuilt() throws Exception {
+        final BuildData data = new BuildData();
+        ObjectId sha1 = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+        ObjectId next = ObjectId.fromString("89abcdef0123456789abcdef0123456789abcdef");
+        assertFalse(data.hasBeenBuilt(sha1));
+
+        data.saveBuild(new Build(revision(sha1, "origin/master"), 1, null));
+        assertTrue(data.hasBeenBuilt(sha1));
+        assertFalse(data.hasBeenBuilt(next));
+
+        // the only branch pointing at sha1 moves on, so sha1 is no longer recorded
+        data.saveBuild(new Build(revision(next, "origin/master"), 2, null));
+        assertFalse(data.hasBeenBuilt(sha1));
+        assertTrue(data.hasBeenBuilt(next));
+
+        BuildData clone = data.clone();
+        assertTrue(clone.hasBeenBuilt(next));
+        clone.saveBuild(new Build(revision(sha1, "origin/other"), 3, null));
+        assertTrue(clone.hasBeenBuilt(sha1));
+        assertFalse(data.hasBeenBuilt(sha1));
+    }
+
+    public void testChangesToBuildsByBranchNameAreIndexed() throws Exception {
+        final BuildData data = new BuildData();
+        ObjectId sha1 = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+        ObjectId next = ObjectId.fromString("89abcdef0123456789abcdef0123456789abcdef");
+        data.saveBuild(new Build(revision(sha1, "origin/master"), 1, null));
+        assertTrue(data.hasBeenBuilt(sha1));
+
+        // the build of a branch replaced through the map
+        data.getBuildsByBranchName().put("origin/master", new Build(revision(next, "origin/master"), 2, null));
+        assertFalse(data.hasBeenBuilt(sha1));
+        assertTrue(data.hasBeenBuilt(next));
+
+        // ... or through its entries
+        data.getBuildsByBranchName().entrySet().iterator().next().setValue(new Build(revision(sha1, "origin/master"), 3, null));
+        assertTrue(data.hasBeenBuilt(sha1));
+        assertFalse(data.hasBeenBuilt(next));
+
+        // a map set directly on the field, and then changed
+        Map<String, Build> replaced = new HashMap<String, Build>();
+        replaced.put("origin/master", new Build(revision(next, "origin/master"), 4, null));
+        data.buildsByBranchName = replaced;
+        assertFalse(data.hasBeenBuilt(sha1));
+        assertTrue(data.hasBeenBuilt(next));
+        replaced.put("origin/master", new Build(revision(sha1, "origin/master"), 5, null));
+        assertTrue(data.hasBeenBuilt(sha1));
+        assertFalse(data.hasBeenBuilt(next));
+    }
+
+    public void testBuildsByBranchNameWrittenAsPlainMap() throws Exception {
+        final BuildData data = new BuildData();
+        ObjectId sha1 = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+        data.saveBuild(new Build(revision(sha1, "origin/master"), 1, null));
+
+        String xml = Run.XSTREAM.toXML(data);
+        assertFalse(xml, xml.contains("BranchMap"));
+        BuildData read = (BuildData) Run.XSTREAM.fromXML(xml);
+        assertEquals(data.getBuildsByBranchName().keySet(), read.getBuildsByBranchName().keySet());
+        assertTrue(read.hasBeenBuilt(sha1));
+        read.saveBuild(new Build(revision(sha1, "origin/other"), 2, null));
+        assertEquals(2, read.getBuildsByBranchName().size());
+    }
+
+    public void testCloneSharesBuildsButNotMaps() throws Exception {
+        final BuildData data = new BuildData("scm");
+        data.addRemoteUrl("https://example.com/repo.git");
+        ObjectId sha1 = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+        Build build = new Build(revision(sha1, "origin/master"), 1, null);
+        data.saveBuild(build);
+
+        BuildData clone = data.clone();
+        assertSame(build, clone.getLastBuildOfBranch("origin/master"));
+        assertSame(build, clone.lastBuild);
+        assertNotSame(data.buildsByBranchName, clone.buildsByBranchName);
+        assertNotSame(data.getRemoteUrls(), clone.getRemoteUrls());
+
+        clone.saveBuild(new Build(revision(sha1, "origin/feature"), 2, null));
+        clone.addRemoteUrl("https://example.com/other.git");
+        assertEquals(1, data.getBuildsByBranchName().size());
+        assertEquals(1, data.getRemoteUrls().size());
+        assertSame(build, data.lastBuild);
+    }
+
+    private static Revision revision(ObjectId sha1, String branch) {
+        return new Revision(sha1, Collections.singleton(new Branch(branch, sha1)));
+    }
 }
@@ -0,0 +1,37 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.AbstractGitTestCase;
+import hudson.plugins.git.Revision;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CommitTimeCacheTest extends AbstractGitTestCase {
+    /**
+     * Verifies that the sort is old to new, and keeps the order of revisions of the same commit.
+     */
+    public void testSort() throws Exception {
+        List<Revision> commits = new ArrayList<Revision>();
+        for (int i=0; i<3; i++) {
+            // in Git, the precision of the timestamp is 1 sec, so we need a large delay to produce commits with different timestamps.
+            if (i > 0)      Thread.sleep(1000);
+            commit("file" + i, johnDoe, "Commit #" + i);
+            commits.add(new Revision(git.revParse("HEAD")));
+        }
+        Revision same = new Revision(commits.get(1).getSha1());
+
+        for (int i=0; i<16; i++) {
+            List<Revision> revs = new ArrayList<Revision>(commits);
+            Collections.shuffle(revs);
+            revs.add(same);
+            CommitTimeCache.sort(git.getRepository(), revs);
+
+            assertEquals(Arrays.asList(commits.get(0), commits.get(1), same, commits.get(2)), revs);
+            assertSame(same, revs.get(2));
+        }
+        assertTrue(new File(git.getRepository().getDirectory(), CommitTimeCache.FILE_NAME).exists());
+    }
+}
@@ -1,10 +1,24 @@
 package hudson.plugins.git.util;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Run;
 import hudson.plugins.git.AbstractGitTestCase;
+import hudson.plugins.git.BranchSpec;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.Revision;
+import hudson.plugins.git.SubmoduleConfig;
+import hudson.plugins.git.TestGitRepo;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.util.StreamTaskListener;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.jenkinsci.plugins.gitclient.GitClient;
 
 /**
  * @author Arnout Engelen
@@ -27,4 +41,94 @@ public class DefaultBuildChooserTest extends AbstractGitTestCase {
         candidateRevisions = buildChooser.getCandidateRevisions(false, "aaa" + shaHashCommit1.substring(3), git, null, null, null);
         assertTrue(candidateRevisions.isEmpty());
     }
+
+    public void testChooseUnqualifiedBranchOfRemote() throws Exception {
+        git.commit("Commit 1");
+        ObjectId head = git.revParse("HEAD");
+        RefUpdate update = git.getRepository().updateRef("refs/remotes/origin/feature");
+        update.setNewObjectId(head);
+        update.update();
+
+        DefaultBuildChooser buildChooser = (DefaultBuildChooser) new GitSCM("foo").getBuildChooser();
+
+        Collection<Revision> candidateRevisions = buildChooser.getCandidateRevisions(false, "feature", git, null, null, null);
+        assertEquals(1, candidateRevisions.size());
+        Revision revision = candidateRevisions.iterator().next();
+        assertEquals(head, revision.getSha1());
+        assertEquals("origin/feature", revision.getBranches().iterator().next().getName());
+
+        candidateRevisions = buildChooser.getCandidateRevisions(false, "origin/feature", git, null, null, null);
+        assertEquals(1, candidateRevisions.size());
+        assertEquals(head, candidateRevisions.iterator().next().getSha1());
+
+        candidateRevisions = buildChooser.getCandidateRevisions(false, "missing", git, null, null, null);
+        assertTrue(candidateRevisions.isEmpty());
+    }
+
+    /**
+     * Two repositories of the same job, such as workspaces on different nodes, are each compared to what was last
+     * seen in them.
+     */
+    public void testBranchesComparedPerRepository() throws Exception {
+        git.commit("Commit 1");
+        ObjectId first = git.revParse("HEAD");
+        git.commit("Commit 2");
+        ObjectId second = git.revParse("HEAD");
+        setRemoteBranch(git, "origin/first", first);
+        setRemoteBranch(git, "origin/second", second);
+
+        TestGitRepo other = new TestGitRepo("other", this, listener);
+        other.git.commit("Other commit");
+        ObjectId otherHead = other.git.revParse("HEAD");
+        setRemoteBranch(other.git, "origin/other", otherHead);
+
+        GitSCM scm = new GitSCM(testRepo.remoteConfigs(), Collections.singletonList(new BranchSpec("**")),
+                false, Collections.<SubmoduleConfig>emptyList(), null, null, Collections.<GitSCMExtension>emptyList());
+        DefaultBuildChooser buildChooser = (DefaultBuildChooser) scm.getBuildChooser();
+
+        boolean verbose = GitSCM.VERBOSE;
+        GitSCM.VERBOSE = true;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Collection<Revision> candidates = buildChooser.getCandidateRevisions(true, "**", git, new StreamTaskListener(out), new BuildData(), context);
+            assertEquals(1, candidates.size());
+            assertEquals(second, candidates.iterator().next().getSha1());
+
+            candidates = buildChooser.getCandidateRevisions(true, "**", other.git, new StreamTaskListener(out), new BuildData(), context);
+            assertEquals(1, candidates.size());
+            assertEquals(otherHead, candidates.iterator().next().getSha1());
+
+            out.reset();
+            candidates = buildChooser.getCandidateRevisions(true, "**", git, new StreamTaskListener(out), new BuildData(), context);
+            assertEquals(1, candidates.size());
+            assertEquals(second, candidates.iterator().next().getSha1());
+            assertTrue(out.toString(), out.toString().contains("Starting with the branches created or moved since last time: []"));
+        } finally {
+            GitSCM.VERBOSE = verbose;
+        }
+    }
+
+    private static void setRemoteBranch(GitClient git, String name, ObjectId sha1) throws Exception {
+        RefUpdate update = git.getRepository().updateRef("refs/remotes/" + name);
+        update.setNewObjectId(sha1);
+        update.update();
+    }
+
+    private final BuildChooserContext context = new BuildChooserContext() {
+        public <T> T actOnBuild(ContextCallable<Run<?, ?>, T> callable) throws IOException, InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        public <T> T actOnProject(ContextCallable<Job<?, ?>, T> callable) throws IOException, InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Run<?, ?> getBuild() {
+            return null;
+        }
+
+        public EnvVars getEnvironment() {
+            return new EnvVars();
+        }
+    };
 }
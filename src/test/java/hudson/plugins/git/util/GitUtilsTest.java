@@ -0,0 +1,107 @@
+package hudson.plugins.git.util;
+
+import hudson.plugins.git.AbstractGitTestCase;
+import hudson.plugins.git.Revision;
+
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class GitUtilsTest extends AbstractGitTestCase {
+
+    private Revision revision(String rev) throws Exception {
+        return new Revision(git.revParse(rev));
+    }
+
+    public void testFilterTipBranches() throws Exception {
+        commit("file1", johnDoe, "Commit number 1");
+        Revision first = revision("HEAD");
+        commit("file2", johnDoe, "Commit number 2");
+        Revision second = revision("HEAD");
+        git.branch("feature");
+        commit("file3", johnDoe, "Commit number 3");
+        Revision third = revision("HEAD");
+        git.checkout().ref("feature").execute();
+        commit("file4", janeDoe, "Commit number 4");
+        Revision feature = revision("HEAD");
+
+        GitUtils utils = new GitUtils(listener, git);
+        assertEquals(Arrays.asList(third, feature), utils.filterTipBranches(Arrays.asList(first, third, second, feature)));
+        // again, from what is already known
+        assertEquals(Arrays.asList(third, feature), utils.filterTipBranches(Arrays.asList(first, third, second, feature)));
+        // a known tip becomes an ancestor
+        commit("file5", janeDoe, "Commit number 5");
+        Revision fifth = revision("HEAD");
+        assertEquals(Arrays.asList(third, fifth), utils.filterTipBranches(Arrays.asList(first, third, feature, fifth)));
+        // an ancestor becomes a tip once its descendants are gone
+        List<Revision> tips = utils.filterTipBranches(Arrays.asList(second, first));
+        assertEquals(Arrays.asList(second), tips);
+    }
+
+    public void testFilterTipBranchesWithSkewedCommitTimes() throws Exception {
+        // each commit claims to be an hour older than its parent
+        long time = System.currentTimeMillis();
+        PersonIdent first = new PersonIdent(johnDoe, new Date(time));
+        commit("file1", first, first, "Commit number 1");
+        Revision oldest = revision("HEAD");
+        PersonIdent second = new PersonIdent(johnDoe, new Date(time - 3600 * 1000));
+        commit("file2", second, second, "Commit number 2");
+        Revision middle = revision("HEAD");
+        PersonIdent third = new PersonIdent(johnDoe, new Date(time - 2 * 3600 * 1000));
+        commit("file3", third, third, "Commit number 3");
+        Revision newest = revision("HEAD");
+
+        GitUtils utils = new GitUtils(listener, git);
+        assertEquals(Arrays.asList(newest), utils.filterTipBranches(Arrays.asList(oldest, newest, middle)));
+        assertEquals(Arrays.asList(middle), utils.filterTipBranches(Arrays.asList(oldest, middle)));
+    }
+
+    public void testFilterTipBranchesOnlyWalksWhatChanged() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            commit("file" + i, johnDoe, "Commit number " + i);
+        }
+        git.branch("feature");
+        commit("master1", johnDoe, "Master commit 1");
+        commit("master2", johnDoe, "Master commit 2");
+        Revision master = revision("HEAD");
+        git.checkout().ref("feature").execute();
+        commit("feature1", janeDoe, "Feature commit 1");
+        Revision feature = revision("HEAD");
+
+        GitUtils utils = new GitUtils(listener, git);
+        assertEquals(Arrays.asList(master, feature), utils.filterTipBranches(Arrays.asList(master, feature)));
+        // the first call numbers all the history
+        assertTrue(TipFilter.getLastSteps(git.getRepository()) >= 13);
+
+        // one branch moves: only the new commit is numbered, and the walk stops at the generation of the branches
+        commit("feature2", janeDoe, "Feature commit 2");
+        Revision moved = revision("HEAD");
+        assertEquals(Arrays.asList(master, moved), utils.filterTipBranches(Arrays.asList(master, moved, feature)));
+        assertTrue(TipFilter.getLastSteps(git.getRepository()) <= 3);
+    }
+
+    public void testFilterTipBranchesReadsGenerationsFromGitDir() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            commit("file" + i, johnDoe, "Commit number " + i);
+        }
+        Revision master = revision("HEAD");
+        git.branch("feature");
+        git.checkout().ref("feature").execute();
+        commit("feature1", janeDoe, "Feature commit 1");
+        Revision feature = revision("HEAD");
+
+        GitUtils utils = new GitUtils(listener, git);
+        assertEquals(Arrays.asList(feature), utils.filterTipBranches(Arrays.asList(master, feature)));
+        assertTrue(new File(git.getRepository().getDirectory(), TipFilter.FILE_NAME).exists());
+
+        // once out of memory, the generation numbers are read again instead of parsing all the history
+        TipFilter.forget();
+        commit("feature2", janeDoe, "Feature commit 2");
+        Revision moved = revision("HEAD");
+        assertEquals(Arrays.asList(moved), utils.filterTipBranches(Arrays.asList(master, moved)));
+        assertTrue(TipFilter.getLastSteps(git.getRepository()) <= 3);
+    }
+}
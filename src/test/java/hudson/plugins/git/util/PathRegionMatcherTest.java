@@ -0,0 +1,68 @@
+package hudson.plugins.git.util;
+
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class PathRegionMatcherTest extends TestCase {
+
+    private static final String[] REGIONS = {"docs/.*", ".*\\.md", "README", "src/main/resources/.*",
+            "(?i)LICENSE.*", "src/(main|test)/java/.*Test\\.java", "lib\\/[^/]*\\.jar", "(a)\\1/.*", ".*"};
+    private static final String[] PATHS = {"docs/index.html", "docs", "src/docs/x.md", "README", "README.md",
+            "src/main/resources/a.properties", "license.txt", "src/test/java/FooTest.java", "src/main/java/Foo.java",
+            "lib/x.jar", "lib/y/x.jar", "aa/b", "ab/b", ""};
+
+    private static boolean anyMatches(String[] regions, String path) {
+        if (regions == null) {
+            return false;
+        }
+        for (String region : regions) {
+            if (Pattern.compile(region).matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void testAgreesWithRegularExpressions() {
+        // every combination of up to two regions on each side
+        for (int i = -1; i < REGIONS.length; i++) {
+            for (int j = i; j < REGIONS.length; j++) {
+                String[] included = i < 0 ? null : j == i ? new String[] {REGIONS[i]} : new String[] {REGIONS[i], REGIONS[j]};
+                for (int k = -1; k < REGIONS.length; k++) {
+                    String[] excluded = k < 0 ? null : new String[] {REGIONS[k], REGIONS[(k + 3) % REGIONS.length]};
+                    PathRegionMatcher matcher = new PathRegionMatcher(included, excluded);
+                    for (String path : PATHS) {
+                        boolean isIncluded = included == null || anyMatches(included, path);
+                        boolean isExcluded = anyMatches(excluded, path);
+                        assertEquals(path, isIncluded, matcher.isIncluded(path));
+                        assertEquals(path, isExcluded, matcher.isExcluded(path));
+                        for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+                            String directory = path.substring(0, slash + 1);
+                            if (!matcher.mayContainRelevant(directory)) {
+                                // the directory stands for the paths it contains
+                                assertFalse(path, isIncluded && !isExcluded);
+                                assertFalse(directory, matcher.isRelevant(directory));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void testPruning() {
+        PathRegionMatcher matcher = new PathRegionMatcher(new String[] {"src/main/.*", "pom\\.xml"}, new String[] {"src/main/resources/.*"});
+        assertTrue(matcher.canPrune());
+        assertTrue(matcher.mayContainRelevant("src/"));
+        assertTrue(matcher.mayContainRelevant("src/main/"));
+        assertTrue(matcher.mayContainRelevant("src/main/java/"));
+        assertFalse(matcher.mayContainRelevant("src/main/resources/"));
+        assertFalse(matcher.mayContainRelevant("src/test/"));
+        assertFalse(matcher.mayContainRelevant("docs/"));
+
+        assertFalse(new PathRegionMatcher(new String[] {".*\\.java"}, null).canPrune());
+        assertTrue(new PathRegionMatcher(new String[] {".*\\.java"}, new String[] {"docs/.*"}).canPrune());
+        assertFalse(new PathRegionMatcher(null, null).canPrune());
+    }
+}
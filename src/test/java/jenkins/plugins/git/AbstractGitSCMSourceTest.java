@@ -3,6 +3,9 @@ package jenkins.plugins.git;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
@@ -38,4 +41,38 @@ public class AbstractGitSCMSourceTest {
     assertTrue(abstractGitSCMSource.isExcluded("test"));
   }
 
+  /*
+   * Remembering the compiled patterns must not change which branches are excluded
+   */
+  @Test
+  public void testIsExcludedSameAsUncompiledPatterns(){
+    AbstractGitSCMSource abstractGitSCMSource = mock(AbstractGitSCMSource.class);
+    when(abstractGitSCMSource.isExcluded(Mockito.anyString())).thenCallRealMethod();
+
+    String[][] filters = {
+        {"*master release* fe?ture", "release bugfix*"},
+        {"a*b master", ""},
+        {"*", "*-wip"},
+        {"*master release* fe?ture", "release bugfix*"},
+    };
+    String[] branches = {"master", "remote/master", "masterx", "release", "release/X.Y", "fe?ture", "feature",
+        "bugfix/test", "ab", "axb", "xab", "topic-wip", "test", ""};
+    for (String[] filter : filters) {
+      when(abstractGitSCMSource.getIncludes()).thenReturn(filter[0]);
+      when(abstractGitSCMSource.getExcludes()).thenReturn(filter[1]);
+      // twice, the second time from the remembered patterns
+      for (int i = 0; i < 2; i++) {
+        for (String branch : branches) {
+          assertEquals(filter[0] + " / " + filter[1] + ": " + branch,
+              isExcluded(filter[0], filter[1], branch), abstractGitSCMSource.isExcluded(branch));
+        }
+      }
+    }
+  }
+
+  private static boolean isExcluded(String includes, String excludes, String branchName){
+    return !Pattern.matches(AbstractGitSCMSource.getPattern(includes), branchName)
+        || Pattern.matches(AbstractGitSCMSource.getPattern(excludes), branchName);
+  }
+
 }